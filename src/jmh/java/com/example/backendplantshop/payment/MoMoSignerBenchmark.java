@@ -0,0 +1,104 @@
+package com.example.backendplantshop.payment;
+
+import com.example.backendplantshop.dto.request.momo.MoMoCallbackRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+
+// So sánh chi phí ký/verify 1 IPN MoMo:
+// cách cũ (MoMoUtil) mỗi lần gọi Mac.getInstance + init, hex bằng String.format("%02x") từng byte, raw hash bằng String.format;
+// cách mới (MoMoSigner) dùng Mac dựng sẵn theo thread, bảng tra hex và StringBuilder đủ dung lượng.
+// Chạy 4 thread để thấy cả chi phí ThreadLocal lẫn tranh chấp của Mac.getInstance (provider lookup)
+@State(Scope.Benchmark)
+@Threads(4)
+public class MoMoSignerBenchmark {
+    private static final String ACCESS_KEY = "F8BBA842ECF85";
+    private static final String SECRET_KEY = "K951B6PE1waDMi640xX08PD3vg6EkVlz";
+
+    private MoMoSigner signer;
+    private MoMoCallbackRequest callback;
+
+    @Setup
+    public void setUp() {
+        signer = new MoMoSigner(ACCESS_KEY, SECRET_KEY);
+        callback = MoMoCallbackRequest.builder()
+                .partnerCode("MOMO")
+                .orderId("ORDER_1024_1760000000000")
+                .requestId("8f7c1c1e-3b0d-4d54-9a3e-3f5d2d8b7a10")
+                .amount(350_000L)
+                .orderInfo("Thanh toán đơn hàng #1024")
+                .orderType("momo_wallet")
+                .transId(4088878653L)
+                .resultCode(0)
+                .message("Successful.")
+                .payType("qr")
+                .responseTime(1760000001234L)
+                .extraData("purpose=ORDER_PAYMENT")
+                .build();
+        callback.setSignature(signer.sign(signer.createCallbackRawHash(callback)));
+    }
+
+    @Benchmark
+    public boolean legacyVerify() {
+        String rawHash = legacyCallbackRawHash();
+        return legacySignature(rawHash).equals(callback.getSignature());
+    }
+
+    @Benchmark
+    public boolean signerVerify() {
+        return signer.verify(callback.getSignature(), signer.createCallbackRawHash(callback));
+    }
+
+    @Benchmark
+    public String legacyHex() {
+        return legacyBytesToHex(callback.getSignature().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Benchmark
+    public String signerHex() {
+        return MoMoSigner.toHex(callback.getSignature().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // đúng như MoMoUtil.createCallbackRawHash trước đây (controller truyền amount/responseTime qua String.valueOf)
+    private String legacyCallbackRawHash() {
+        return String.format("accessKey=%s&amount=%s&extraData=%s&message=%s&orderId=%s&orderInfo=%s&orderType=%s&partnerCode=%s&payType=%s&requestId=%s&responseTime=%s&resultCode=%s&transId=%s",
+                ACCESS_KEY,
+                String.valueOf(callback.getAmount()),
+                callback.getExtraData(),
+                callback.getMessage(),
+                callback.getOrderId(),
+                callback.getOrderInfo(),
+                callback.getOrderType(),
+                callback.getPartnerCode(),
+                callback.getPayType(),
+                callback.getRequestId(),
+                String.valueOf(callback.getResponseTime()),
+                callback.getResultCode(),
+                callback.getTransId());
+    }
+
+    // đúng như MoMoUtil.createSignature trước đây
+    private static String legacySignature(String rawHash) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(SECRET_KEY.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return legacyBytesToHex(mac.doFinal(rawHash.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String legacyBytesToHex(byte[] bytes) {
+        StringBuilder result = new StringBuilder();
+        for (byte b : bytes) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+}
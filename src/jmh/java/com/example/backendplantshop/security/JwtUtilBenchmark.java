@@ -0,0 +1,64 @@
+package com.example.backendplantshop.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Field;
+
+// So sánh chi phí xử lý JWT cho mỗi request của JwtAuthenticationFilter:
+// cách cũ dựng lại key + parser và giải mã token 4 lần (validate, isAccessToken, extractUserId, extractRole),
+// cách mới dùng parser dựng sẵn và giải mã 1 lần qua parseClaims
+@State(Scope.Benchmark)
+public class JwtUtilBenchmark {
+    private static final String SECRET = "benchmark-secret-key-for-jmh-must-be-over-32-chars";
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setUp() throws Exception {
+        jwtUtil = new JwtUtil();
+        setField("secretKey", SECRET);
+        setField("accessTokenExpiration", 3_600_000L);
+        setField("refreshTokenExpiration", 86_400_000L);
+        jwtUtil.init();
+        token = jwtUtil.generateAccessToken(42, "USER");
+    }
+
+    @Benchmark
+    public void legacyFourParses(Blackhole blackhole) {
+        blackhole.consume(legacyClaims());
+        blackhole.consume("access".equals(legacyClaims().get("type", String.class)));
+        blackhole.consume(Integer.parseInt(legacyClaims().getSubject()));
+        blackhole.consume(legacyClaims().get("role", String.class));
+    }
+
+    @Benchmark
+    public void singleParse(Blackhole blackhole) {
+        Claims claims = jwtUtil.parseClaims(token);
+        blackhole.consume(jwtUtil.isAccessToken(claims));
+        blackhole.consume(jwtUtil.extractUserId(claims));
+        blackhole.consume(jwtUtil.extractRole(claims));
+    }
+
+    // đúng như JwtUtil trước đây: mỗi lần gọi đều tạo key và JwtParser mới
+    private Claims legacyClaims() {
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
+    private void setField(String name, Object value) throws Exception {
+        Field field = JwtUtil.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(jwtUtil, value);
+    }
+}
@@ -3,9 +3,11 @@ package com.example.backendplantshop;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.mybatis.spring.annotation.MapperScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @MapperScan("com.example.backendplantshop.mapper")
+@EnableScheduling
 public class BackendPlantshopApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,55 @@
+package com.example.backendplantshop.cache;
+
+import com.example.backendplantshop.entity.Category;
+import com.example.backendplantshop.mapper.CategoryMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+// Cache danh sách danh mục (ít thay đổi) kèm hash nội dung để làm ETag cho /api/category/getall
+@Component
+public class CategoryCatalogCache {
+    private static final String ALL_KEY = "all";
+
+    private final CategoryMapper categoryMapper;
+    private final Cache<String, VersionedValue<List<Category>>> allCategories;
+    private final ObjectMapper objectMapper;
+
+    public CategoryCatalogCache(CategoryMapper categoryMapper,
+                                ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry,
+                                @Value("${cache.product.ttl-seconds:300}") long ttlSeconds) {
+        this.categoryMapper = categoryMapper;
+        this.objectMapper = objectMapper;
+        this.allCategories = Caffeine.newBuilder()
+                .maximumSize(1)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, allCategories, "category.all");
+    }
+
+    public List<Category> getAll() {
+        return getAllVersioned().getValue();
+    }
+
+    public String catalogETag() {
+        return "\"cl-" + getAllVersioned().getVersion() + "\"";
+    }
+
+    // gọi sau khi thêm/sửa/xóa/khôi phục danh mục
+    public void evict() {
+        allCategories.invalidateAll();
+    }
+
+    private VersionedValue<List<Category>> getAllVersioned() {
+        return allCategories.get(ALL_KEY, key -> VersionedValue.of(List.copyOf(categoryMapper.getAll()), objectMapper));
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.backendplantshop.cache;
+
+import com.example.backendplantshop.entity.Products;
+import com.example.backendplantshop.mapper.ProductMapper;
+import com.example.backendplantshop.util.TransactionUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Cache sản phẩm trong bộ nhớ đặt trước ProductMapper.findById/getAll cho các trang storefront.
+// Hết hạn theo TTL và bị xóa chủ động mỗi khi admin sửa sản phẩm hoặc tồn kho thay đổi.
+@Slf4j
+@Component
+public class ProductCatalogCache {
+    private static final String ALL_KEY = "all";
+
+    private final ProductMapper productMapper;
+    private final Cache<Integer, VersionedValue<Products>> productsById;
+    private final Cache<String, VersionedValue<List<Products>>> allProducts;
+    private final Counter invalidations;
+    // version của mỗi giá trị là hash nội dung, nên ETag chỉ đổi khi dữ liệu thật sự đổi
+    private final ObjectMapper objectMapper;
+
+    public ProductCatalogCache(ProductMapper productMapper,
+                               ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry,
+                               @Value("${cache.product.max-size:10000}") long maxSize,
+                               @Value("${cache.product.ttl-seconds:300}") long ttlSeconds) {
+        this.productMapper = productMapper;
+        this.objectMapper = objectMapper;
+        this.productsById = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        this.allProducts = Caffeine.newBuilder()
+                .maximumSize(1)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        // hit/miss/eviction của Caffeine: cache.gets, cache.evictions... với tag cache=product.by-id / product.all
+        CaffeineCacheMetrics.monitor(meterRegistry, productsById, "product.by-id");
+        CaffeineCacheMetrics.monitor(meterRegistry, allProducts, "product.all");
+        this.invalidations = Counter.builder("cache.product.invalidations")
+                .description("Số lần xóa cache sản phẩm do dữ liệu thay đổi")
+                .register(meterRegistry);
+    }
+
+    // Sản phẩm chưa bị xóa theo id, null nếu không tồn tại (kết quả null không được cache)
+    public Products findById(int id) {
+        VersionedValue<Products> product = findVersionedById(id);
+        return product != null ? product.getValue() : null;
+    }
+
+    // Lấy nhiều sản phẩm theo thứ tự ids truyền vào, id nào chưa có trong cache thì nạp chung 1 câu findByIds;
+    // id không tồn tại/đã xóa bị bỏ qua
+    public List<Products> findAllById(List<Integer> ids) {
+        Map<Integer, VersionedValue<Products>> found = productsById.getAll(ids, missing -> {
+            Map<Integer, VersionedValue<Products>> loaded = new HashMap<>();
+            for (Products product : productMapper.findByIds(new ArrayList<>(missing))) {
+                loaded.put(product.getProduct_id(), VersionedValue.of(product, objectMapper));
+            }
+            return loaded;
+        });
+        List<Products> products = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            VersionedValue<Products> product = found.get(id);
+            if (product != null) {
+                products.add(product.getValue());
+            }
+        }
+        return products;
+    }
+
+    public List<Products> getAll() {
+        return getAllVersioned().getValue();
+    }
+
+    // ETag mạnh của danh sách sản phẩm đang được phục vụ
+    public String catalogETag() {
+        return "\"pl-" + getAllVersioned().getVersion() + "\"";
+    }
+
+    // ETag mạnh của 1 sản phẩm, null nếu sản phẩm không tồn tại
+    public String productETag(int id) {
+        VersionedValue<Products> product = findVersionedById(id);
+        return product != null ? "\"p" + id + "-" + product.getVersion() + "\"" : null;
+    }
+
+    private VersionedValue<Products> findVersionedById(int id) {
+        return productsById.get(id, key -> {
+            Products product = productMapper.findById(key);
+            return product != null ? VersionedValue.of(product, objectMapper) : null;
+        });
+    }
+
+    private VersionedValue<List<Products>> getAllVersioned() {
+        return allProducts.get(ALL_KEY, key -> VersionedValue.of(List.copyOf(productMapper.getAll()), objectMapper));
+    }
+
+    public void evict(int productId) {
+        TransactionUtil.runAfterCommit(() -> {
+            productsById.invalidate(productId);
+            allProducts.invalidateAll();
+            invalidations.increment();
+        });
+    }
+
+    // Chỉ xóa danh sách (dùng khi thêm sản phẩm mới)
+    public void evictCatalog() {
+        TransactionUtil.runAfterCommit(() -> {
+            allProducts.invalidateAll();
+            invalidations.increment();
+        });
+    }
+
+    public void evictAll(Collection<Integer> productIds) {
+        TransactionUtil.runAfterCommit(() -> {
+            productsById.invalidateAll(productIds);
+            allProducts.invalidateAll();
+            invalidations.increment();
+        });
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.backendplantshop.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Phần thông tin user mà JwtAuthenticationFilter cần để đối chiếu với token
+@Getter
+@AllArgsConstructor
+public class UserPrincipal {
+    private final String role;
+    private final boolean deleted; // true khi user đã bị xóa mềm hoặc không tồn tại
+}
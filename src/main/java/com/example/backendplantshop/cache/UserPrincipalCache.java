@@ -0,0 +1,46 @@
+package com.example.backendplantshop.cache;
+
+import com.example.backendplantshop.entity.Users;
+import com.example.backendplantshop.mapper.UserMapper;
+import com.example.backendplantshop.util.TransactionUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// Cache role + trạng thái xóa của user theo user_id cho JwtAuthenticationFilter, thay cho 1 câu SELECT users mỗi request.
+// TTL ngắn để giới hạn độ trễ khi chạy nhiều instance; trên instance xử lý thay đổi thì entry bị xóa ngay sau commit.
+@Component
+public class UserPrincipalCache {
+    private final UserMapper userMapper;
+    private final Cache<Integer, UserPrincipal> principals;
+
+    public UserPrincipalCache(UserMapper userMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${cache.user-principal.max-size:50000}") long maxSize,
+                              @Value("${cache.user-principal.ttl-seconds:30}") long ttlSeconds) {
+        this.userMapper = userMapper;
+        this.principals = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, principals, "user.principal");
+    }
+
+    public UserPrincipal get(int userId) {
+        return principals.get(userId, id -> {
+            Users user = userMapper.findById(id); // findById đã lọc is_deleted = 0
+            return user != null ? new UserPrincipal(user.getRole(), false) : new UserPrincipal(null, true);
+        });
+    }
+
+    // gọi sau khi đổi role, xóa/khôi phục user hoặc đổi mật khẩu
+    public void evict(int userId) {
+        TransactionUtil.runAfterCommit(() -> principals.invalidate(userId));
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.backendplantshop.cache;
+
+import com.example.backendplantshop.util.TokenHashUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Giá trị trong cache kèm version = SHA-256 của nội dung (JSON), tính 1 lần mỗi lần nạp từ DB và dùng làm ETag:
+// dữ liệu không đổi thì ETag giữ nguyên trên mọi instance và qua các lần nạp lại sau TTL
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class VersionedValue<T> {
+    private final T value;
+    private final String version;
+
+    public static <T> VersionedValue<T> of(T value, ObjectMapper objectMapper) {
+        try {
+            return new VersionedValue<>(value, TokenHashUtil.sha256Hex(objectMapper.writeValueAsString(value)).substring(0, 32));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Không tính được version cho giá trị cache", e);
+        }
+    }
+}
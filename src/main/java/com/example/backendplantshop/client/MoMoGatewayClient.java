@@ -0,0 +1,114 @@
+package com.example.backendplantshop.client;
+
+import com.example.backendplantshop.enums.ErrorCode;
+import com.example.backendplantshop.exception.AppException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Mọi lời gọi HTTP tới cổng MoMo đi qua đây: pool kết nối + timeout riêng (momoRestTemplate),
+// cầu dao riêng cho từng operation để khi MoMo chậm/lỗi thì từ chối ngay thay vì giữ thread chờ tới 30s
+// (API tra trạng thái lỗi hoặc cấu hình sai không làm mở cầu dao của tạo thanh toán), và histogram độ trễ momo.gateway.requests theo operation/outcome.
+@Slf4j
+@Component
+public class MoMoGatewayClient {
+    private final RestTemplate restTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    public MoMoGatewayClient(@Qualifier("momoRestTemplate") RestTemplate restTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${momo.circuit-breaker.failure-threshold:5}") int failureThreshold,
+                             @Value("${momo.circuit-breaker.open-ms:30000}") long openMillis) {
+        this.restTemplate = restTemplate;
+        this.meterRegistry = meterRegistry;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    private CircuitBreaker circuitBreaker(String operation) {
+        return circuitBreakers.computeIfAbsent(operation, key -> {
+            CircuitBreaker breaker = new CircuitBreaker(failureThreshold, openMillis);
+            // 0 = đóng (bình thường), 1 = mở, 2 = đang thử lại
+            Gauge.builder("momo.gateway.circuit.state", breaker, b -> b.getState().ordinal())
+                    .description("Trạng thái cầu dao MoMo")
+                    .tag("operation", key)
+                    .register(meterRegistry);
+            return breaker;
+        });
+    }
+
+    // POST JSON tới MoMo. Lỗi kết nối/timeout/5xx tính là MoMo đang lỗi -> PAYMENT_GATEWAY_UNAVAILABLE;
+    // 4xx là lỗi của request nên ném nguyên exception cho nơi gọi xử lý
+    public <T> T post(String operation, String url, Object body, Class<T> responseType) {
+        CircuitBreaker circuitBreaker = circuitBreaker(operation);
+        if (!circuitBreaker.tryAcquire()) {
+            Counter.builder("momo.gateway.rejected")
+                    .description("Số lời gọi MoMo bị từ chối vì cầu dao đang mở")
+                    .tag("operation", operation)
+                    .register(meterRegistry)
+                    .increment();
+            log.warn("Cầu dao MoMo đang mở, từ chối {} không gọi MoMo", operation);
+            throw new AppException(ErrorCode.PAYMENT_GATEWAY_UNAVAILABLE);
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        long started = System.nanoTime();
+        String outcome = "success";
+        try {
+            T response = restTemplate.exchange(url, HttpMethod.POST, new HttpEntity<>(body, headers), responseType).getBody();
+            circuitBreaker.onSuccess();
+            return response;
+        } catch (HttpStatusCodeException e) {
+            if (e.getStatusCode().is5xxServerError()) {
+                outcome = "server_error";
+                circuitBreaker.onFailure();
+                log.error("MoMo {} trả về {}: {}", operation, e.getStatusCode(), e.getResponseBodyAsString());
+                throw new AppException(ErrorCode.PAYMENT_GATEWAY_UNAVAILABLE);
+            }
+            outcome = "client_error";
+            circuitBreaker.onSuccess(); // MoMo vẫn phản hồi bình thường
+            throw e;
+        } catch (ResourceAccessException e) {
+            outcome = "io_error";
+            circuitBreaker.onFailure();
+            log.error("Không gọi được MoMo {} (timeout/lỗi kết nối): {}", operation, e.getMessage());
+            throw new AppException(ErrorCode.PAYMENT_GATEWAY_UNAVAILABLE);
+        } catch (RuntimeException e) {
+            outcome = "error";
+            circuitBreaker.onFailure();
+            throw e;
+        } finally {
+            Timer.builder("momo.gateway.requests")
+                    .description("Độ trễ lời gọi cổng MoMo")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public CircuitBreaker.State getCircuitState(String operation) {
+        return circuitBreaker(operation).getState();
+    }
+}
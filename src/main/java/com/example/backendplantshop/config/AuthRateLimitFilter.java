@@ -0,0 +1,237 @@
+package com.example.backendplantshop.config;
+
+import com.example.backendplantshop.dto.response.ApiResponse;
+import com.example.backendplantshop.enums.ErrorCode;
+import com.example.backendplantshop.security.TokenBucket;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Giới hạn tần suất cho đăng nhập / gửi OTP / nhập OTP theo IP và theo email (token bucket),
+// chặn trước khi vào AuthenticationController để dò mật khẩu hàng loạt không chiếm hết CPU cho BCrypt
+// và không spam SMTP. Sau reverse proxy cần bật server.forward-headers-strategy để getRemoteAddr() là IP client.
+@Slf4j
+@Component
+public class AuthRateLimitFilter extends OncePerRequestFilter {
+
+    // capacity: số lần liên tiếp tối đa, refillSeconds: bao lâu hồi lại 1 lần
+    enum Rule {
+        LOGIN(20, 3, 5, 30),
+        OTP_SEND(5, 60, 3, 120),
+        OTP_VERIFY(20, 3, 5, 60);
+
+        private final int ipCapacity;
+        private final long ipRefillNanos;
+        private final int emailCapacity;
+        private final long emailRefillNanos;
+
+        Rule(int ipCapacity, long ipRefillSeconds, int emailCapacity, long emailRefillSeconds) {
+            this.ipCapacity = ipCapacity;
+            this.ipRefillNanos = TimeUnit.SECONDS.toNanos(ipRefillSeconds);
+            this.emailCapacity = emailCapacity;
+            this.emailRefillNanos = TimeUnit.SECONDS.toNanos(emailRefillSeconds);
+        }
+    }
+
+    private static final Map<String, Rule> RULES = Map.of(
+            "/api/auth/login", Rule.LOGIN,
+            "/api/auth/send-otp-register", Rule.OTP_SEND,
+            "/api/auth/forgot-password/send-otp", Rule.OTP_SEND,
+            "/api/auth/verify-otp", Rule.OTP_VERIFY,
+            "/api/auth/register", Rule.OTP_VERIFY,
+            "/api/auth/forgot-password/reset", Rule.OTP_VERIFY
+    );
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    // body được đọc trước khi xác thực nên phải giới hạn, tránh bị gửi body khổng lồ để chiếm bộ nhớ
+    private final int maxBodyBytes;
+    // bucket không dùng 15 phút thì chắc chắn đã đầy lại -> bỏ đi, giới hạn bộ nhớ khi bị spam email/IP ngẫu nhiên
+    private final Cache<String, TokenBucket> buckets = Caffeine.newBuilder()
+            .maximumSize(200_000)
+            .expireAfterAccess(Duration.ofMinutes(15))
+            .build();
+    private final Map<Rule, Counter> rejectedByIp = new EnumMap<>(Rule.class);
+    private final Map<Rule, Counter> rejectedByEmail = new EnumMap<>(Rule.class);
+
+    public AuthRateLimitFilter(ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry,
+                               @Value("${rate-limit.auth.enabled:true}") boolean enabled,
+                               @Value("${rate-limit.auth.max-body-bytes:8192}") int maxBodyBytes) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.maxBodyBytes = maxBodyBytes;
+        for (Rule rule : Rule.values()) {
+            rejectedByIp.put(rule, rejected(meterRegistry, rule, "ip"));
+            rejectedByEmail.put(rule, rejected(meterRegistry, rule, "email"));
+        }
+    }
+
+    // /actuator/metrics/auth.rate-limit.rejected?tag=rule:LOGIN
+    private static Counter rejected(MeterRegistry meterRegistry, Rule rule, String key) {
+        return Counter.builder("auth.rate-limit.rejected")
+                .description("Số request bị chặn do vượt giới hạn tần suất")
+                .tag("rule", rule.name())
+                .tag("key", key)
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !"POST".equals(request.getMethod()) || !RULES.containsKey(path(request));
+    }
+
+    // đường dẫn không gồm context path (server.servlet.context-path), để luật vẫn khớp khi deploy dưới 1 context
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        Rule rule = RULES.get(path(request));
+        long now = System.nanoTime();
+
+        TokenBucket ipBucket = bucket(rule.name() + ":ip:" + request.getRemoteAddr(), rule.ipCapacity, rule.ipRefillNanos, now);
+        if (!ipBucket.tryAcquire(now)) {
+            rejectedByIp.get(rule).increment();
+            reject(response, ipBucket.nanosUntilNextToken(now));
+            return;
+        }
+
+        // đọc body 1 lần (tối đa maxBodyBytes) để lấy email, rồi đưa bản sao cho controller đọc lại
+        if (request.getContentLengthLong() > maxBodyBytes) {
+            writeError(response, ErrorCode.PAYLOAD_TOO_LARGE);
+            return;
+        }
+        // Content-Length có thể thiếu (chunked) nên vẫn chặn trong lúc đọc
+        byte[] body = request.getInputStream().readNBytes(maxBodyBytes + 1);
+        if (body.length > maxBodyBytes) {
+            writeError(response, ErrorCode.PAYLOAD_TOO_LARGE);
+            return;
+        }
+        CachedBodyRequest cachedRequest = new CachedBodyRequest(request, body);
+        String email = extractEmail(cachedRequest.body);
+        if (email != null) {
+            TokenBucket emailBucket = bucket(rule.name() + ":email:" + email, rule.emailCapacity, rule.emailRefillNanos, now);
+            if (!emailBucket.tryAcquire(now)) {
+                rejectedByEmail.get(rule).increment();
+                log.warn("Chặn {} cho email {} từ IP {} do vượt giới hạn", rule, email, request.getRemoteAddr());
+                reject(response, emailBucket.nanosUntilNextToken(now));
+                return;
+            }
+        }
+        filterChain.doFilter(cachedRequest, response);
+    }
+
+    private TokenBucket bucket(String key, int capacity, long refillNanos, long now) {
+        return buckets.get(key, k -> new TokenBucket(capacity, refillNanos, now));
+    }
+
+    // body sai định dạng thì bỏ qua, để controller trả lỗi validate như bình thường
+    private String extractEmail(byte[] body) {
+        if (body.length == 0) {
+            return null;
+        }
+        try {
+            JsonNode email = objectMapper.readTree(body).get("email");
+            if (email == null || !email.isTextual() || email.asText().isBlank()) {
+                return null;
+            }
+            return email.asText().trim().toLowerCase(Locale.ROOT);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void reject(HttpServletResponse response, long retryAfterNanos) throws IOException {
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos) + 1);
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        writeError(response, ErrorCode.TOO_MANY_REQUESTS);
+    }
+
+    private void writeError(HttpServletResponse response, ErrorCode errorCode) throws IOException {
+        response.setStatus(errorCode.getCode());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        objectMapper.writeValue(response.getOutputStream(), ApiResponse.builder()
+                .statusCode(errorCode.getCode())
+                .success(Boolean.FALSE)
+                .message(errorCode.getMessage())
+                .build());
+    }
+
+    // request có body đọc lại được nhiều lần (body các API auth rất nhỏ, đã giới hạn bởi maxBodyBytes)
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return input.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding() != null ? getCharacterEncoding() : StandardCharsets.UTF_8.name();
+            return new BufferedReader(new InputStreamReader(getInputStream(), Charset.forName(encoding)));
+        }
+    }
+}
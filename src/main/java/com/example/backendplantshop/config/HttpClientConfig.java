@@ -0,0 +1,67 @@
+package com.example.backendplantshop.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+// RestTemplate cho từng dịch vụ bên ngoài, mỗi cái 1 pool kết nối riêng (keep-alive, có giới hạn, có timeout)
+// để 1 dịch vụ chậm không chiếm hết kết nối/thread của dịch vụ khác.
+// Số kết nối đang dùng/chờ xem ở /actuator/metrics/httpcomponents.httpclient.pool.total.connections?tag=httpclient:google
+@Configuration
+public class HttpClientConfig {
+
+    @Bean
+    public RestTemplate googleRestTemplate(MeterRegistry meterRegistry,
+                                           @Value("${google.http.max-connections:20}") int maxConnections,
+                                           @Value("${google.http.connect-timeout-ms:3000}") long connectTimeoutMs,
+                                           @Value("${google.http.read-timeout-ms:5000}") long readTimeoutMs) {
+        return pooledRestTemplate("google", meterRegistry, maxConnections, connectTimeoutMs, readTimeoutMs);
+    }
+
+    // MoMo khuyến nghị chờ phản hồi tối đa 30s, kết nối thì phải nhanh hơn nhiều
+    @Bean
+    public RestTemplate momoRestTemplate(MeterRegistry meterRegistry,
+                                         @Value("${momo.http.max-connections:50}") int maxConnections,
+                                         @Value("${momo.http.connect-timeout-ms:3000}") long connectTimeoutMs,
+                                         @Value("${momo.http.read-timeout-ms:30000}") long readTimeoutMs) {
+        return pooledRestTemplate("momo", meterRegistry, maxConnections, connectTimeoutMs, readTimeoutMs);
+    }
+
+    public static RestTemplate pooledRestTemplate(String name, MeterRegistry meterRegistry,
+                                           int maxConnections, long connectTimeoutMs, long readTimeoutMs) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections) // mỗi dịch vụ chỉ gọi vài host
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(10)) // kết nối để lâu thì kiểm tra trước khi dùng lại
+                        .setTimeToLive(TimeValue.ofMinutes(5))
+                        .build())
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, name).bindTo(meterRegistry);
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectTimeoutMs)) // chờ lấy kết nối từ pool
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                .build();
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+}
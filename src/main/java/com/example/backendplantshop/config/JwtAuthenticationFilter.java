@@ -1,8 +1,10 @@
 package com.example.backendplantshop.config;
 
 import com.example.backendplantshop.security.JwtUtil;
-import com.example.backendplantshop.mapper.UserMapper;
-import com.example.backendplantshop.entity.Users;
+import com.example.backendplantshop.security.TokenRevocationRegistry;
+import com.example.backendplantshop.cache.UserPrincipal;
+import com.example.backendplantshop.cache.UserPrincipalCache;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -23,7 +25,8 @@ import java.util.Collections;
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtUtil jwtUtil;
-    private final UserMapper userMapper;
+    private final UserPrincipalCache userPrincipalCache;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
 
 
     @Override
@@ -33,13 +36,21 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
 
-            if (jwtUtil.validateToken(token) && jwtUtil.isAccessToken(token)) {
-                int userId = jwtUtil.extractUserId(token);
-                String tokenRole = jwtUtil.extractRole(token);
+            // chỉ giải mã + xác minh chữ ký 1 lần cho mỗi request
+            Claims claims = jwtUtil.parseClaims(token);
+            if (claims != null && jwtUtil.isAccessToken(claims)) {
+                int userId = jwtUtil.extractUserId(claims);
+                String tokenRole = jwtUtil.extractRole(claims);
 
-                // Cross-check role hiện tại trong DB để bắt đăng nhập lại nếu role đã đổi
-                Users current = userMapper.findById(userId);
-                if (current == null || tokenRole == null || !tokenRole.equalsIgnoreCase(current.getRole())) {
+                // token cấp trước lần logout/đổi mật khẩu gần nhất của user -> từ chối ngay, không cần đợi hết hạn
+                if (tokenRevocationRegistry.isRevoked(userId, claims.getIssuedAt())) {
+                    response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                    return;
+                }
+
+                // Cross-check role hiện tại (cache theo user_id, bị xóa khi đổi role/xóa user) để bắt đăng nhập lại nếu role đã đổi
+                UserPrincipal current = userPrincipalCache.get(userId);
+                if (current.isDeleted() || tokenRole == null || !tokenRole.equalsIgnoreCase(current.getRole())) {
                     response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                     return; // buộc client đăng nhập lại vì token không còn phù hợp với role hiện tại
                 }
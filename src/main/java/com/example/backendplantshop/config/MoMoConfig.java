@@ -20,6 +20,9 @@ public class MoMoConfig {
     @Value("${momo.api-endpoint:https://test-payment.momo.vn/v2/gateway/api/create}")
     private String apiEndpoint;
     
+    @Value("${momo.query-endpoint:https://test-payment.momo.vn/v2/gateway/api/query}")
+    private String queryEndpoint;
+    
     @Value("${momo.return-url}")
     private String returnUrl;
     
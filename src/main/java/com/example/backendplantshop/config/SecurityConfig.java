@@ -1,6 +1,9 @@
 package com.example.backendplantshop.config;
 
+import com.example.backendplantshop.security.BoundedPasswordEncoder;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -17,12 +20,19 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 public class SecurityConfig {
     //inject filter kiểm tra JWT
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    //giới hạn tần suất login/OTP theo IP và email
+    private final AuthRateLimitFilter authRateLimitFilter;
 
 
-    //mã hóa mật khẩu và so sánh khi login
+    //mã hóa mật khẩu và so sánh khi login, BCrypt chạy trên pool riêng có giới hạn (quá tải thì trả 503)
     @Bean
-    public PasswordEncoder passwordEncoder(){
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry,
+                                           @Value("${password-hashing.threads:0}") int threads,
+                                           @Value("${password-hashing.queue-capacity:64}") int queueCapacity,
+                                           @Value("${password-hashing.timeout-ms:5000}") long timeoutMs){
+        // 0 = số core - 1 (chừa lại ít nhất 1 core cho các API khác)
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), meterRegistry, poolSize, queueCapacity, timeoutMs);
 
     }
 
@@ -43,9 +53,12 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth //cấu hình phân quyền bằng lambda
                         .requestMatchers("/api/auth/login", "/api/auth/register", "/api/auth/refresh", "/api/auth/google", "/api/auth/send-otp-register", "/api/auth/verify-otp", "/api/auth/forgot-password/**").permitAll() //cho phép truy cập tự do ko cần JWT
                         .requestMatchers("/api/payments/momo/callback", "/api/payments/momo/return").permitAll() //cho phép MoMo callback công khai
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN") //metrics chỉ cho admin xem
                         .anyRequest().authenticated() //mọi request ngoài ds trên phải được xác thực JWT
                 )
 
+                .addFilterBefore(authRateLimitFilter, UsernamePasswordAuthenticationFilter.class)
                 .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
@@ -2,7 +2,6 @@ package com.example.backendplantshop.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -43,13 +42,4 @@ public class WebConfig implements WebMvcConfigurer {
         source.registerCorsConfiguration("/api/**", configuration);
         return source;
     }
-    
-    @Bean
-    public RestTemplate restTemplate() {
-        RestTemplate restTemplate = new RestTemplate();
-        // Timeout 30s theo khuyến nghị của MoMo
-        // Note: RestTemplate mặc định không có timeout, nhưng với Spring Boot 2.1+
-        // có thể cấu hình qua RestTemplateBuilder nếu cần
-        return restTemplate;
-    }
 }
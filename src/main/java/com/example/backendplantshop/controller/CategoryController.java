@@ -6,9 +6,13 @@ import com.example.backendplantshop.dto.response.CategoryDtoResponse;
 import com.example.backendplantshop.entity.Category;
 import com.example.backendplantshop.enums.ErrorCode;
 import com.example.backendplantshop.service.intf.CategoryService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -16,11 +20,20 @@ import java.util.List;
 @RequestMapping("api/category")
 @RequiredArgsConstructor
 public class CategoryController {
+    // Spring Security mặc định gửi "no-cache, no-store" nên trình duyệt không giữ body và không bao giờ gửi If-None-Match;
+    // "no-cache, private" cho phép trình duyệt lưu lại nhưng phải hỏi lại server bằng ETag mỗi lần dùng
+    private static final String CATALOG_CACHE_CONTROL = CacheControl.noCache().cachePrivate().getHeaderValue();
+
     @Autowired
     private final CategoryService categoryService;
 
     @GetMapping("/getall")
-    public ApiResponse<List<CategoryDtoResponse>> doGetAllCategory() {
+    public ApiResponse<List<CategoryDtoResponse>> doGetAllCategory(WebRequest webRequest, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CATALOG_CACHE_CONTROL);
+        // If-None-Match khớp ETag hiện tại -> trả 304, không serialize body
+        if (webRequest.checkNotModified(categoryService.getCategoryETag())) {
+            return null;
+        }
         return ApiResponse.<List<CategoryDtoResponse>>builder()
                 .statusCode(ErrorCode.CALL_API_SUCCESSFULL.getCode())
                 .success(Boolean.TRUE)
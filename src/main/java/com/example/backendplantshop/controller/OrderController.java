@@ -1,16 +1,21 @@
 package com.example.backendplantshop.controller;
 
 import com.example.backendplantshop.dto.request.OrderDtoRequest;
+import com.example.backendplantshop.dto.request.OrderPageDtoRequest;
 import com.example.backendplantshop.dto.request.UpdateOrderStatusDtoRequest;
 import com.example.backendplantshop.dto.request.UpdateShippingStatusDtoRequest;
 import com.example.backendplantshop.dto.response.ApiResponse;
 import com.example.backendplantshop.dto.response.OrderDtoResponse;
+import com.example.backendplantshop.dto.response.OrderPageDtoResponse;
 import com.example.backendplantshop.enums.ErrorCode;
+import com.example.backendplantshop.service.intf.OrderExportService;
 import com.example.backendplantshop.service.intf.OrderService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -18,6 +23,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class OrderController {
     private final OrderService orderService;
+    private final OrderExportService orderExportService;
 
     @PostMapping("/add")
     public ApiResponse<OrderDtoResponse> createOrder(@Valid @RequestBody OrderDtoRequest orderRequest) {
@@ -64,6 +70,26 @@ public class OrderController {
                 .build();
     }
 
+    // Phân trang cho admin: GET /api/orders/page?status=CONFIRMED&size=20&cursor=...
+    @GetMapping("/page")
+    public ApiResponse<OrderPageDtoResponse> getOrdersPage(@ModelAttribute OrderPageDtoRequest request) {
+        OrderPageDtoResponse page = orderService.getOrdersPage(request);
+        return ApiResponse.<OrderPageDtoResponse>builder()
+                .statusCode(ErrorCode.CALL_API_SUCCESSFULL.getCode())
+                .success(Boolean.TRUE)
+                .message(ErrorCode.CALL_API_SUCCESSFULL.getMessage())
+                .data(page)
+                .build();
+    }
+
+    // Xuất đơn hàng cho admin: GET /api/orders/export?format=csv|ndjson&from_date=2024-01-01T00:00:00
+    @GetMapping("/export")
+    public void exportOrders(@ModelAttribute OrderPageDtoRequest filter,
+                             @RequestParam(value = "format", required = false) String format,
+                             HttpServletResponse response) throws IOException {
+        orderExportService.exportOrders(filter, format, response);
+    }
+
     @PutMapping("/{orderId}")
     public ApiResponse<OrderDtoResponse> updateOrderStatus(
             @PathVariable("orderId") int orderId,
@@ -7,13 +7,11 @@ import com.example.backendplantshop.dto.response.ApiResponse;
 import com.example.backendplantshop.dto.response.PaymentDtoResponse;
 import com.example.backendplantshop.dto.response.momo.CreatePaymentResponse;
 import com.example.backendplantshop.enums.ErrorCode;
-import com.example.backendplantshop.enums.MoMoPaymentPurpose;
-import com.example.backendplantshop.config.MoMoConfig;
+import com.example.backendplantshop.payment.MoMoCallbackProcessor;
+import com.example.backendplantshop.payment.MoMoSigner;
 import com.example.backendplantshop.service.intf.MoMoService;
-import com.example.backendplantshop.service.intf.OrderService;
 import com.example.backendplantshop.service.intf.PaymentService;
 import com.example.backendplantshop.service.impl.AuthServiceImpl;
-import com.example.backendplantshop.util.MoMoUtil;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -32,9 +30,9 @@ public class PaymentController {
     
     private final PaymentService paymentService;
     private final MoMoService momoService;
-    private final OrderService orderService;
+    private final MoMoCallbackProcessor momoCallbackProcessor;
     private final AuthServiceImpl authService;
-    private final MoMoConfig momoConfig;
+    private final MoMoSigner momoSigner;
     
     @PostMapping("/create/{orderId}")
     public ApiResponse<PaymentDtoResponse> createPayment(
@@ -142,21 +140,7 @@ public class PaymentController {
                     callbackRequest.getOrderId(), callbackRequest.getResultCode(), callbackRequest.getAmount());
             
             // Tạo raw hash để verify signature
-            String rawHash = MoMoUtil.createCallbackRawHash(
-                    momoConfig.getAccessKey(),
-                    String.valueOf(callbackRequest.getAmount()),
-                    callbackRequest.getExtraData() != null ? callbackRequest.getExtraData() : "",
-                    callbackRequest.getMessage() != null ? callbackRequest.getMessage() : "",
-                    callbackRequest.getOrderId(),
-                    callbackRequest.getOrderInfo() != null ? callbackRequest.getOrderInfo() : "",
-                    callbackRequest.getOrderType() != null ? callbackRequest.getOrderType() : "",
-                    callbackRequest.getPartnerCode(),
-                    callbackRequest.getPayType() != null ? callbackRequest.getPayType() : "",
-                    callbackRequest.getRequestId(),
-                    String.valueOf(callbackRequest.getResponseTime()),
-                    callbackRequest.getResultCode(),
-                    callbackRequest.getTransId()
-            );
+            String rawHash = momoSigner.createCallbackRawHash(callbackRequest);
             
             // Verify signature
             boolean isValid = momoService.verifyCallback(callbackRequest.getSignature(), rawHash);
@@ -165,18 +149,9 @@ public class PaymentController {
                 return ResponseEntity.badRequest().body("{\"status\":\"invalid_signature\"}");
             }
             
-            Integer orderId = paymentService.extractOrderIdFromMoMoOrderId(callbackRequest.getOrderId());
-            if (orderId == null) {
-                log.error("Không thể parse orderId từ giá trị: {}", callbackRequest.getOrderId());
-            }
-            MoMoPaymentPurpose purpose = MoMoPaymentPurpose.fromExtraData(callbackRequest.getExtraData());
-
-            // Xử lý kết quả thanh toán
-            if (purpose == MoMoPaymentPurpose.DEPOSIT) {
-                paymentService.handleDepositCallback(orderId, callbackRequest);
-            } else {
-                orderService.handleOrderPaymentCallback(orderId, callbackRequest);
-            }
+            // Chỉ lưu vào inbox rồi trả 200 ngay, worker của MoMoCallbackProcessor cập nhật đơn hàng/đặt cọc sau.
+            // IPN trùng (MoMo gửi lại) vẫn trả 200 để MoMo ngừng gửi, nhưng không cập nhật đơn hàng lần nữa
+            momoCallbackProcessor.enqueue(callbackRequest);
             
             // Trả về response cho MoMo
             return ResponseEntity.ok().body("{\"status\":\"success\"}");
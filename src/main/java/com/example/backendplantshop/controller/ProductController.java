@@ -1,14 +1,21 @@
 package com.example.backendplantshop.controller;
 
 import com.example.backendplantshop.dto.request.products.ProductDtoRequest;
+import com.example.backendplantshop.dto.request.products.ProductFilterDtoRequest;
 import com.example.backendplantshop.dto.response.ApiResponse;
 import com.example.backendplantshop.dto.response.ProductDtoResponse;
+import com.example.backendplantshop.dto.response.ProductFilterDtoResponse;
+import com.example.backendplantshop.dto.response.ProductSearchDtoResponse;
 import com.example.backendplantshop.enums.ErrorCode;
 import com.example.backendplantshop.service.intf.ProductService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.AllArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 
@@ -19,6 +26,10 @@ import java.util.List;
 @RequestMapping("api/product")
 @AllArgsConstructor
 public class ProductController {
+    // Spring Security mặc định gửi "no-cache, no-store" nên trình duyệt không giữ body và không bao giờ gửi If-None-Match;
+    // "no-cache, private" cho phép trình duyệt lưu lại nhưng phải hỏi lại server bằng ETag mỗi lần dùng
+    private static final String CATALOG_CACHE_CONTROL = CacheControl.noCache().cachePrivate().getHeaderValue();
+
     @Autowired
     private final ProductService productService;
 
@@ -26,7 +37,12 @@ public class ProductController {
     private ObjectMapper objectMapper; //tạo đối tượng dể chuyển json -> Object jva
 
     @GetMapping("/getall")
-    public ApiResponse<List<ProductDtoResponse>> goGetAllProduct() {
+    public ApiResponse<List<ProductDtoResponse>> goGetAllProduct(WebRequest webRequest, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CATALOG_CACHE_CONTROL);
+        // If-None-Match khớp ETag hiện tại -> trả 304, không serialize body
+        if (webRequest.checkNotModified(productService.getCatalogETag())) {
+            return null;
+        }
         return ApiResponse.<List<ProductDtoResponse>>builder()
                 .statusCode(ErrorCode.CALL_API_SUCCESSFULL.getCode())
                 .success(Boolean.TRUE)
@@ -45,8 +61,38 @@ public class ProductController {
                 .build();
     }
 
+    @GetMapping("/search")
+    public ApiResponse<ProductSearchDtoResponse> doSearchProduct(@RequestParam("keyword") String keyword,
+                                                                 @RequestParam(value = "page", required = false) Integer page,
+                                                                 @RequestParam(value = "size", required = false) Integer size) {
+        return ApiResponse.<ProductSearchDtoResponse>builder()
+                .statusCode(ErrorCode.CALL_API_SUCCESSFULL.getCode())
+                .success(Boolean.TRUE)
+                .message(ErrorCode.CALL_API_SUCCESSFULL.getMessage())
+                .data(productService.searchProducts(keyword, page, size))
+                .build();
+    }
+
+    // Lọc storefront: GET /api/product/filter?category_ids=1&sizes=Nhỏ&min_price=50000&max_price=200000&out_of_stock=false&page=0
+    @GetMapping("/filter")
+    public ApiResponse<ProductFilterDtoResponse> doFilterProduct(@ModelAttribute ProductFilterDtoRequest request) {
+        return ApiResponse.<ProductFilterDtoResponse>builder()
+                .statusCode(ErrorCode.CALL_API_SUCCESSFULL.getCode())
+                .success(Boolean.TRUE)
+                .message(ErrorCode.CALL_API_SUCCESSFULL.getMessage())
+                .data(productService.filterProducts(request))
+                .build();
+    }
+
     @GetMapping("/get-by-id/{id}")
-    public ApiResponse<ProductDtoResponse> doGetProductById(@PathVariable("id") int id) {
+    public ApiResponse<ProductDtoResponse> doGetProductById(@PathVariable("id") int id, WebRequest webRequest,
+                                                            HttpServletResponse response) {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CATALOG_CACHE_CONTROL);
+        String etag = productService.getProductETag(id);
+        // sản phẩm không tồn tại thì để findProductById ném lỗi như cũ
+        if (etag != null && webRequest.checkNotModified(etag)) {
+            return null;
+        }
         return ApiResponse.<ProductDtoResponse>builder()
                 .statusCode(ErrorCode.CALL_API_SUCCESSFULL.getCode())
                 .success(Boolean.TRUE)
@@ -7,14 +7,13 @@ import com.example.backendplantshop.dto.response.user.RegisterDtoResponse;
 import com.example.backendplantshop.dto.response.user.UserDtoResponse;
 import com.example.backendplantshop.entity.UserTokens;
 import com.example.backendplantshop.entity.Users;
-import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
 public class UserConvert {
 
-    public static Users convertResigterDtoRequestToUsers(RegisterDtoRequest dto, PasswordEncoder passwordEncoder) {
+    public static Users convertResigterDtoRequestToUsers(RegisterDtoRequest dto, String encodedPassword) {
        
         String role = (dto.getRole() != null && !dto.getRole().trim().isEmpty()) 
                 ? dto.getRole().trim().toUpperCase() 
@@ -22,7 +21,7 @@ public class UserConvert {
         
         return Users.builder()
                 .email(dto.getEmail())
-                .password(passwordEncoder.encode(dto.getPassword()))
+                .password(encodedPassword)
                 .username(dto.getUsername())
                 .role(role)
                 .is_deleted(false)
@@ -86,12 +85,6 @@ public class UserConvert {
                 .build();
     }
 
-    public static LoginDtoResponse fromTokens(String accessToken, UserTokens existingToken) {
-        return LoginDtoResponse.builder()
-                .accessToken(accessToken)
-                .refreshToken(existingToken.getToken())
-                .build();
-    }
 
 
 }
@@ -0,0 +1,30 @@
+package com.example.backendplantshop.dto.request;
+
+import com.example.backendplantshop.enums.OrderSatus;
+import com.example.backendplantshop.enums.ShippingStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderPageDtoRequest {
+    private OrderSatus status;
+    private ShippingStatus shipping_status;
+    private Integer user_id;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime from_date; // lọc order_date >= from_date
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime to_date;   // lọc order_date < to_date
+
+    private String cursor; // next_cursor của trang trước, bỏ trống để lấy trang đầu
+    private Integer size;  // số đơn mỗi trang (mặc định 20, tối đa 100)
+}
@@ -0,0 +1,19 @@
+package com.example.backendplantshop.dto.request.momo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Body API tra trạng thái giao dịch của MoMo (/v2/gateway/api/query)
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MoMoQueryRequest {
+    private String partnerCode;
+    private String requestId;
+    private String orderId;
+    private String lang;
+    private String signature;
+}
@@ -0,0 +1,24 @@
+package com.example.backendplantshop.dto.request.products;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductFilterDtoRequest {
+    private List<Integer> category_ids; // chọn nhiều danh mục: ?category_ids=1&category_ids=2
+    private List<String> sizes;         // size sản phẩm (Nhỏ, Vừa, Lớn...)
+    private BigDecimal min_price;
+    private BigDecimal max_price;
+    private Boolean out_of_stock;       // bỏ trống = không lọc theo tồn kho
+
+    private Integer page; // bắt đầu từ 0
+    private Integer size; // số sản phẩm mỗi trang (mặc định 20, tối đa 100)
+}
@@ -0,0 +1,40 @@
+package com.example.backendplantshop.dto.response;
+
+import com.example.backendplantshop.enums.OrderSatus;
+import com.example.backendplantshop.enums.PaymentStatus;
+import com.example.backendplantshop.enums.ShippingStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// 1 dòng xuất = 1 chi tiết đơn hàng kèm thông tin đơn và payment mới nhất của đơn
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderExportRowDtoResponse {
+    private int order_id;
+    private LocalDateTime order_date;
+    private OrderSatus status;
+    private ShippingStatus shipping_status;
+    private int user_id;
+    private String shipping_name;
+    private String shipping_phone;
+    private String shipping_address;
+    private BigDecimal total;
+    private BigDecimal discount_amount;
+    private BigDecimal final_total;
+    private Integer order_detail_id; // null nếu đơn không còn chi tiết
+    private Integer product_id;
+    private Integer quantity;
+    private BigDecimal price_at_order;
+    private BigDecimal sub_total;
+    private Integer payment_id;      // null nếu đơn chưa có payment
+    private Integer method_id;
+    private PaymentStatus payment_status;
+    private LocalDateTime payment_date;
+}
@@ -0,0 +1,18 @@
+package com.example.backendplantshop.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderPageDtoResponse {
+    private List<OrderDtoResponse> orders;
+    private String next_cursor; // null khi đã hết dữ liệu
+    private boolean has_more;
+}
@@ -0,0 +1,29 @@
+package com.example.backendplantshop.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductFilterDtoResponse {
+    private List<ProductDtoResponse> products;
+    private int total;
+    private int page;
+    private int size;
+
+    // số sản phẩm của từng lựa chọn khi giữ nguyên các bộ lọc còn lại
+    private Map<Integer, Integer> category_counts;
+    private Map<String, Integer> size_counts;
+    private int in_stock_count;
+    private int out_of_stock_count;
+    private BigDecimal min_price; // khoảng giá của kết quả khi bỏ lọc giá, dùng cho thanh trượt giá
+    private BigDecimal max_price;
+}
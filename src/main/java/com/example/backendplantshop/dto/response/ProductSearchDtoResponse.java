@@ -0,0 +1,19 @@
+package com.example.backendplantshop.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductSearchDtoResponse {
+    private List<ProductDtoResponse> products; // đã xếp hạng theo độ liên quan
+    private int total; // tổng số sản phẩm khớp
+    private int page; // bắt đầu từ 0
+    private int size;
+}
@@ -0,0 +1,23 @@
+package com.example.backendplantshop.dto.response.momo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MoMoQueryResponse {
+    private String partnerCode;
+    private String orderId;
+    private String requestId;
+    private String extraData;
+    private Long amount;
+    private Long transId;
+    private String payType;
+    private Integer resultCode;
+    private String message;
+    private Long responseTime;
+}
@@ -0,0 +1,24 @@
+package com.example.backendplantshop.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MoMoCallback {
+    private long callback_id;
+    private String partner_code;
+    private String momo_order_id; // orderId gửi cho MoMo, vd: ORDER_12_1700000000000
+    private long trans_id;
+    private Integer order_id;     // orders.order_id parse từ momo_order_id
+    private String purpose;       // ORDER_PAYMENT / DEPOSIT
+    private Integer result_code;
+    private Long amount;
+    private LocalDateTime processed_at;
+}
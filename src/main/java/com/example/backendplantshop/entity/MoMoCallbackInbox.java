@@ -0,0 +1,26 @@
+package com.example.backendplantshop.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MoMoCallbackInbox {
+    private long inbox_id;
+    private String partner_code;
+    private String momo_order_id;
+    private long trans_id;
+    private String payload;                // MoMoCallbackRequest dạng JSON
+    private String status;                 // PENDING / PROCESSING / DONE / FAILED
+    private int attempts;
+    private LocalDateTime next_attempt_at;
+    private String last_error;
+    private LocalDateTime received_at;
+    private LocalDateTime processed_at;
+}
@@ -0,0 +1,24 @@
+package com.example.backendplantshop.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MoMoPaymentAttempt {
+    private String momo_order_id;   // orderId gửi cho MoMo, vd: ORDER_35_1733831974000
+    private String request_id;
+    private int order_id;
+    private String purpose;         // ORDER_PAYMENT / DEPOSIT
+    private long amount;
+    private LocalDateTime created_at;
+    private LocalDateTime last_checked_at;
+    private Integer last_result_code;
+    private Boolean reconciled;
+}
@@ -0,0 +1,21 @@
+package com.example.backendplantshop.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserIdentity {
+    private int identity_id;
+    private int user_id;
+    private String provider; // vd: google
+    private String subject;  // id của user bên provider (Google "id"/"sub"), không đổi kể cả khi đổi email
+    private String email;
+    private LocalDateTime created_at;
+}
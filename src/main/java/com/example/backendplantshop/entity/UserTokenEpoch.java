@@ -0,0 +1,15 @@
+package com.example.backendplantshop.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserTokenEpoch {
+    private int user_id;
+    private long revoked_before; // epoch giây: access token có iat nhỏ hơn giá trị này bị coi là đã thu hồi
+}
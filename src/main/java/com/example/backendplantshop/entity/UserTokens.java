@@ -15,7 +15,8 @@ import java.time.LocalDateTime;
 public class UserTokens {
     private int token_id;
     private int user_id;
-    private String token;
+    private String token; // refresh token gốc, chỉ dùng trước khi lưu, không ghi xuống DB
+    private String token_hash; // SHA-256 của refresh token
     private LocalDateTime expires_at;
     private Boolean revoked;
     private LocalDateTime created_at;
@@ -14,6 +14,10 @@ public enum ErrorCode {
     TOKEN_ALREADY_REVOKED(401,"token đã bị vô hiệu hóa!"),
     AUTHENTICATION_ERROR(401, "lỗi xác thực"),
     ACCESS_DENIED(403, "không có quyền truy cập"),
+    PAYLOAD_TOO_LARGE(413, "dữ liệu gửi lên quá lớn"),
+    TOO_MANY_REQUESTS(429, "thao tác quá nhiều lần, vui lòng thử lại sau"),
+    SERVICE_BUSY(503, "hệ thống đang quá tải, vui lòng thử lại sau"),
+    PAYMENT_GATEWAY_UNAVAILABLE(503, "cổng thanh toán MoMo tạm thời không phản hồi, vui lòng thử lại sau"),
     CART_IS_EMPTY(1002, "giỏ hàng trống"),
 //    ===============================================================
     REGISTER_SUCCESSFULL (202,"đăng ký tài khoản thành công"),
@@ -76,6 +80,10 @@ public enum ErrorCode {
     DEPOSIT_NOT_REQUIRED(1009, "Đơn hàng này không cần đặt cọc"),
     DEPOSIT_ALREADY_PAID(1010, "Đơn hàng đã được đặt cọc"),
     DEPOSIT_METHOD_NOT_FOUND(1011, "Không tìm thấy phương thức thanh toán đặt cọc"),
+    INVALID_CURSOR(1012, "cursor phân trang không hợp lệ"),
+    INVALID_EXPORT_FORMAT(1013, "định dạng xuất không hợp lệ (csv hoặc ndjson)"),
+    SEARCH_KEYWORD_EMPTY(1014, "từ khóa tìm kiếm không được để trống"),
+    INVALID_PRICE_RANGE(1015, "khoảng giá không hợp lệ"),
 
 
 //    ========================================================================
@@ -0,0 +1,6 @@
+package com.example.backendplantshop.enums;
+
+public enum ExportFormat {
+    CSV,
+    NDJSON
+}
@@ -6,6 +6,7 @@ import com.example.backendplantshop.enums.ErrorCode;
 
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.BadSqlGrammarException;
@@ -18,6 +19,7 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @Slf4j //dùng tạo log.ifo, error... tự động
 @ControllerAdvice
@@ -92,6 +94,21 @@ public class GlobalExceptionHandler {
         );
     }
 
+    //pool băm mật khẩu (BoundedPasswordEncoder) quá tải -> từ chối nhanh, client thử lại sau
+    @ExceptionHandler(value = RejectedExecutionException.class)
+    ResponseEntity<ApiResponse> handleRejectedExecutionException(RejectedExecutionException e, HttpServletRequest request){
+        log.warn("Từ chối request {} do quá tải: {}", request.getRequestURI(), e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(
+                ApiResponse.builder()
+                        .statusCode(ErrorCode.SERVICE_BUSY.getCode())
+                        .success(Boolean.FALSE)
+                        .message(ErrorCode.SERVICE_BUSY.getMessage())
+                        .build()
+        );
+    }
+
     // ========== SECURITY EXCEPTION HANDLERS ==========
     
     @ExceptionHandler(value = AccessDeniedException.class)
@@ -0,0 +1,88 @@
+package com.example.backendplantshop.job;
+
+import com.example.backendplantshop.mapper.EmailOtpMapper;
+import com.example.backendplantshop.mapper.UserTokenMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.function.IntUnaryOperator;
+
+// Dọn định kỳ phiên đăng nhập (user_tokens) đã hết hạn/bị thu hồi và OTP (user_otp) đã hết hạn.
+// Xóa theo từng lô nhỏ, mỗi lô tự commit (không @Transactional) và nghỉ giữa các lô
+// để không giữ khóa lâu, không chặn đăng nhập/gửi OTP đang chạy song song.
+@Slf4j
+@Component
+public class CredentialPurgeJob {
+    private final UserTokenMapper userTokenMapper;
+    private final EmailOtpMapper emailOtpMapper;
+    private final int batchSize;
+    private final long pauseMs;
+    private final int maxBatches;
+    private final Counter expiredTokens;
+    private final Counter revokedTokens;
+    private final Counter expiredOtps;
+
+    public CredentialPurgeJob(UserTokenMapper userTokenMapper,
+                              EmailOtpMapper emailOtpMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${purge.batch-size:1000}") int batchSize,
+                              @Value("${purge.pause-ms:200}") long pauseMs,
+                              @Value("${purge.max-batches:200}") int maxBatches) {
+        this.userTokenMapper = userTokenMapper;
+        this.emailOtpMapper = emailOtpMapper;
+        this.batchSize = batchSize;
+        this.pauseMs = pauseMs;
+        this.maxBatches = maxBatches;
+        this.expiredTokens = rowsPurged(meterRegistry, "user_tokens", "expired");
+        this.revokedTokens = rowsPurged(meterRegistry, "user_tokens", "revoked");
+        this.expiredOtps = rowsPurged(meterRegistry, "user_otp", "expired");
+    }
+
+    // /actuator/metrics/purge.rows?tag=table:user_tokens
+    private static Counter rowsPurged(MeterRegistry meterRegistry, String table, String reason) {
+        return Counter.builder("purge.rows")
+                .description("Số dòng đã bị job dọn dữ liệu xóa")
+                .tag("table", table)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${purge.initial-delay-ms:60000}", fixedDelayString = "${purge.interval-ms:3600000}")
+    public void purge() {
+        long started = System.currentTimeMillis();
+        long tokens = purgeInBatches(userTokenMapper::deleteExpiredTokens, expiredTokens)
+                + purgeInBatches(userTokenMapper::deleteRevokedTokens, revokedTokens);
+        long otps = purgeInBatches(emailOtpMapper::deleteExpiredOtps, expiredOtps);
+        log.info("Đã dọn {} phiên đăng nhập và {} OTP trong {} ms", tokens, otps, System.currentTimeMillis() - started);
+    }
+
+    // chạy tới khi 1 lô xóa ít hơn batchSize (đã hết dòng) hoặc chạm maxBatches, phần còn lại để lần chạy sau
+    private long purgeInBatches(IntUnaryOperator deleteBatch, Counter counter) {
+        long total = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            int deleted;
+            try {
+                deleted = deleteBatch.applyAsInt(batchSize);
+            } catch (RuntimeException e) {
+                log.error("Lỗi khi xóa lô dữ liệu hết hạn, dừng lần chạy này", e);
+                break;
+            }
+            counter.increment(deleted);
+            total += deleted;
+            if (deleted < batchSize) {
+                break;
+            }
+            try {
+                Thread.sleep(pauseMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return total;
+    }
+}
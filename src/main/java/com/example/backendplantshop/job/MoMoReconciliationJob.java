@@ -0,0 +1,257 @@
+package com.example.backendplantshop.job;
+
+import com.example.backendplantshop.client.MoMoGatewayClient;
+import com.example.backendplantshop.config.MoMoConfig;
+import com.example.backendplantshop.dto.request.momo.MoMoCallbackRequest;
+import com.example.backendplantshop.dto.request.momo.MoMoQueryRequest;
+import com.example.backendplantshop.dto.response.momo.MoMoQueryResponse;
+import com.example.backendplantshop.entity.MoMoPaymentAttempt;
+import com.example.backendplantshop.enums.MoMoPaymentPurpose;
+import com.example.backendplantshop.mapper.MoMoPaymentAttemptMapper;
+import com.example.backendplantshop.payment.MoMoSigner;
+import com.example.backendplantshop.service.intf.MoMoCallbackService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Đối soát khi mất IPN: định kỳ lấy các lần thanh toán MoMo (momo_payment_attempts) mà đơn vẫn còn payment PROCESSING
+// hoặc đặt cọc paid = 0, tra trạng thái ở MoMo (tối đa "parallelism" lời gọi cùng lúc) rồi áp dụng kết quả
+// qua MoMoCallbackService.process như 1 IPN bình thường, nên IPN đến muộn sau đó sẽ bị bỏ qua vì trùng.
+@Slf4j
+@Component
+public class MoMoReconciliationJob {
+    // MoMo chưa có kết quả cuối: 1000 chờ người dùng xác nhận, 7000/7002 đang xử lý, 9000 đã ủy quyền chờ capture
+    private static final Set<Integer> PENDING_RESULT_CODES = Set.of(1000, 7000, 7002, 9000);
+
+    private final MoMoPaymentAttemptMapper attemptMapper;
+    private final MoMoGatewayClient momoGatewayClient;
+    private final MoMoSigner momoSigner;
+    private final MoMoConfig momoConfig;
+    private final MoMoCallbackService momoCallbackService;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int minAgeMinutes;
+    private final int maxAgeHours;
+    private final int recheckMinutes;
+    private final ExecutorService queryPool;
+    // chạy 1 lần đối soát ngoài pool @Scheduled dùng chung (3 thread) để lời gọi MoMo chậm không làm trễ job khác
+    private final ExecutorService runner;
+    private final AtomicBoolean inProgress = new AtomicBoolean();
+    private final Timer runTimer;
+    private final Counter skipped;
+
+    public MoMoReconciliationJob(MoMoPaymentAttemptMapper attemptMapper,
+                                 MoMoGatewayClient momoGatewayClient,
+                                 MoMoSigner momoSigner,
+                                 MoMoConfig momoConfig,
+                                 MoMoCallbackService momoCallbackService,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${momo.reconcile.enabled:true}") boolean enabled,
+                                 @Value("${momo.reconcile.batch-size:50}") int batchSize,
+                                 @Value("${momo.reconcile.parallelism:4}") int parallelism,
+                                 @Value("${momo.reconcile.min-age-minutes:15}") int minAgeMinutes,
+                                 @Value("${momo.reconcile.max-age-hours:48}") int maxAgeHours,
+                                 @Value("${momo.reconcile.recheck-minutes:10}") int recheckMinutes) {
+        this.attemptMapper = attemptMapper;
+        this.momoGatewayClient = momoGatewayClient;
+        this.momoSigner = momoSigner;
+        this.momoConfig = momoConfig;
+        this.momoCallbackService = momoCallbackService;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.minAgeMinutes = minAgeMinutes;
+        this.maxAgeHours = maxAgeHours;
+        this.recheckMinutes = recheckMinutes;
+        AtomicInteger sequence = new AtomicInteger();
+        this.queryPool = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "momo-reconcile-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.runner = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "momo-reconcile-runner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.runTimer = Timer.builder("momo.reconcile.run")
+                .description("Thời gian 1 lần chạy đối soát MoMo")
+                .register(meterRegistry);
+        this.skipped = Counter.builder("momo.reconcile.skipped")
+                .description("Số lần bỏ qua vì lần đối soát trước chưa xong")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() {
+        runner.shutdownNow();
+        queryPool.shutdownNow();
+    }
+
+    // chỉ giao lần chạy cho runner rồi trả thread @Scheduled về ngay; lần trước chưa xong thì bỏ qua lần này
+    @Scheduled(initialDelayString = "${momo.reconcile.initial-delay-ms:120000}", fixedDelayString = "${momo.reconcile.interval-ms:300000}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        if (!inProgress.compareAndSet(false, true)) {
+            skipped.increment();
+            log.debug("Lần đối soát MoMo trước chưa xong, bỏ qua lần này");
+            return;
+        }
+        try {
+            runner.execute(() -> {
+                try {
+                    runTimer.record(this::reconcileOnce);
+                } finally {
+                    inProgress.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // đang tắt ứng dụng
+            inProgress.set(false);
+        }
+    }
+
+    void reconcileOnce() {
+        List<MoMoPaymentAttempt> attempts = new ArrayList<>();
+        try {
+            attempts.addAll(attemptMapper.findStaleOrderPayments(minAgeMinutes, maxAgeHours, recheckMinutes, batchSize));
+            attempts.addAll(attemptMapper.findStaleDeposits(minAgeMinutes, maxAgeHours, recheckMinutes, batchSize));
+        } catch (RuntimeException e) {
+            log.error("Lỗi khi tìm giao dịch MoMo cần đối soát, dừng lần chạy này", e);
+            return;
+        }
+        if (attempts.isEmpty()) {
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>(attempts.size());
+        for (MoMoPaymentAttempt attempt : attempts) {
+            tasks.add(() -> {
+                reconcileAttempt(attempt);
+                return null;
+            });
+        }
+        List<Future<Void>> results;
+        try {
+            results = queryPool.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        int failed = 0;
+        for (Future<Void> result : results) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                failed++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        log.info("Đối soát MoMo: đã tra {} giao dịch, {} lỗi (tra lại lần sau)", attempts.size(), failed);
+    }
+
+    private void reconcileAttempt(MoMoPaymentAttempt attempt) {
+        MoMoQueryResponse response;
+        try {
+            response = query(attempt);
+        } catch (RuntimeException e) {
+            // cầu dao "query" đang mở / timeout: các giao dịch còn lại cũng sẽ bị từ chối nhanh, lần chạy sau tra lại
+            outcome("error").increment();
+            log.warn("Không tra được trạng thái MoMo cho {}: {}", attempt.getMomo_order_id(), e.getMessage());
+            throw e;
+        }
+        Integer resultCode = response != null ? response.getResultCode() : null;
+        if (resultCode == null || PENDING_RESULT_CODES.contains(resultCode)) {
+            outcome("pending").increment();
+            attemptMapper.markChecked(attempt.getMomo_order_id(), resultCode, false);
+            return;
+        }
+
+        // thành công (0) hoặc thất bại cuối cùng: áp dụng y như IPN, đã áp dụng rồi thì MoMoCallbackService bỏ qua
+        boolean applied;
+        try {
+            applied = momoCallbackService.process(toCallback(attempt, response));
+        } catch (RuntimeException e) {
+            outcome("error").increment();
+            log.error("Lỗi khi áp dụng kết quả đối soát MoMo cho {}", attempt.getMomo_order_id(), e);
+            throw e;
+        }
+
+        // chỉ đóng khi đơn/đặt cọc đã thật sự rời trạng thái chờ (process trả false vì trùng không có nghĩa là đã áp dụng);
+        // đặt cọc thất bại thì vẫn paid = 0, không có gì để đổi
+        boolean failedDeposit = resultCode != 0 && MoMoPaymentPurpose.DEPOSIT.name().equals(attempt.getPurpose());
+        if (!failedDeposit && !attemptMapper.isSettled(attempt.getMomo_order_id())) {
+            outcome("unsettled").increment();
+            attemptMapper.markChecked(attempt.getMomo_order_id(), resultCode, false);
+            log.warn("Đối soát MoMo {} (order {}): resultCode={} nhưng đơn vẫn đang chờ (applied={}), tra lại lần sau",
+                    attempt.getMomo_order_id(), attempt.getOrder_id(), resultCode, applied);
+            return;
+        }
+        attemptMapper.markChecked(attempt.getMomo_order_id(), resultCode, true);
+        outcome(resultCode == 0 ? "success" : "failed").increment();
+        log.info("Đối soát MoMo {} (order {}): resultCode={} - {}",
+                attempt.getMomo_order_id(), attempt.getOrder_id(), resultCode, response.getMessage());
+    }
+
+    private MoMoQueryResponse query(MoMoPaymentAttempt attempt) {
+        String requestId = UUID.randomUUID().toString();
+        String rawHash = momoSigner.createQueryRawHash(attempt.getMomo_order_id(), momoConfig.getPartnerCode(), requestId);
+        MoMoQueryRequest queryRequest = MoMoQueryRequest.builder()
+                .partnerCode(momoConfig.getPartnerCode())
+                .requestId(requestId)
+                .orderId(attempt.getMomo_order_id())
+                .lang(momoConfig.getLang())
+                .signature(momoSigner.sign(rawHash))
+                .build();
+        return momoGatewayClient.post("query", momoConfig.getQueryEndpoint(), queryRequest, MoMoQueryResponse.class);
+    }
+
+    // kết quả tra trạng thái có cùng các field chính như IPN; extraData thiếu thì lấy purpose đã lưu lúc tạo thanh toán
+    private MoMoCallbackRequest toCallback(MoMoPaymentAttempt attempt, MoMoQueryResponse response) {
+        return MoMoCallbackRequest.builder()
+                .partnerCode(response.getPartnerCode() != null ? response.getPartnerCode() : momoConfig.getPartnerCode())
+                .orderId(attempt.getMomo_order_id())
+                .requestId(response.getRequestId())
+                .amount(response.getAmount() != null ? response.getAmount() : attempt.getAmount())
+                .transId(response.getTransId())
+                .resultCode(response.getResultCode())
+                .message(response.getMessage())
+                .payType(response.getPayType())
+                .responseTime(response.getResponseTime())
+                .extraData(response.getExtraData() != null && !response.getExtraData().isBlank()
+                        ? response.getExtraData()
+                        : "purpose=" + attempt.getPurpose())
+                .build();
+    }
+
+    // /actuator/metrics/momo.reconcile?tag=outcome:success
+    private Counter outcome(String outcome) {
+        return Counter.builder("momo.reconcile")
+                .description("Kết quả đối soát giao dịch MoMo")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.backendplantshop.mail;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.MailSender;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hàng đợi gửi mail trong tiến trình: request chỉ bỏ mail vào hàng đợi rồi trả về ngay,
+// các worker lấy mail ra gửi theo lô (JavaMailSenderImpl gửi cả lô qua 1 kết nối SMTP),
+// lỗi thì thử lại với backoff tăng dần, quá số lần thử thì ghi log dead-letter "mail.dead-letter".
+@Slf4j
+@Component
+public class MailQueue {
+    private static final Logger deadLetter = LoggerFactory.getLogger("mail.dead-letter");
+
+    private final MailSender mailSender;
+    private final BlockingQueue<PendingMail> queue;
+    private final int workerCount;
+    private final int maxBatch;
+    private final int maxAttempts;
+    private final long backoffMs;
+    private final Counter sent;
+    private final Counter retried;
+    private final Counter dead;
+    private final Timer sendTimer;
+    private ExecutorService workers;
+    private ScheduledExecutorService retryScheduler;
+    private volatile boolean running;
+
+    public MailQueue(MailSender mailSender,
+                     MeterRegistry meterRegistry,
+                     @Value("${mail.queue.capacity:1000}") int capacity,
+                     @Value("${mail.queue.workers:2}") int workerCount,
+                     @Value("${mail.queue.max-batch:20}") int maxBatch,
+                     @Value("${mail.queue.max-attempts:4}") int maxAttempts,
+                     @Value("${mail.queue.backoff-ms:2000}") long backoffMs) {
+        this.mailSender = mailSender;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.workerCount = workerCount;
+        this.maxBatch = maxBatch;
+        this.maxAttempts = maxAttempts;
+        this.backoffMs = backoffMs;
+        this.sent = meterRegistry.counter("mail.sent");
+        this.retried = meterRegistry.counter("mail.retried");
+        this.dead = meterRegistry.counter("mail.dead-letter");
+        this.sendTimer = Timer.builder("mail.send")
+                .description("Thời gian gửi 1 lô mail qua SMTP")
+                .register(meterRegistry);
+        meterRegistry.gauge("mail.queue.size", queue, BlockingQueue::size);
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        workers = Executors.newFixedThreadPool(workerCount, namedThreads("mail-worker-"));
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(namedThreads("mail-retry-"));
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::work);
+        }
+    }
+
+    // gửi nốt mail còn trong hàng đợi trước khi tắt, mail đang chờ thử lại thì bỏ (ghi dead-letter)
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        int dropped = retryScheduler.shutdownNow().size();
+        if (dropped > 0) {
+            dead.increment(dropped);
+            deadLetter.error("Bỏ {} mail đang chờ thử lại khi tắt ứng dụng", dropped);
+        }
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+    }
+
+    // trả về false nếu hàng đợi đầy (mail được ghi vào dead-letter)
+    public boolean enqueue(SimpleMailMessage message) {
+        if (!queue.offer(new PendingMail(message, 1))) {
+            toDeadLetter(new PendingMail(message, 0), "hàng đợi đầy");
+            return false;
+        }
+        return true;
+    }
+
+    private void work() {
+        List<PendingMail> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            PendingMail first;
+            try {
+                first = queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, maxBatch - 1);
+            send(batch);
+            batch.clear();
+        }
+    }
+
+    private void send(List<PendingMail> batch) {
+        SimpleMailMessage[] messages = new SimpleMailMessage[batch.size()];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = batch.get(i).message;
+        }
+        long started = System.nanoTime();
+        try {
+            mailSender.send(messages);
+            sent.increment(messages.length);
+        } catch (MailSendException e) {
+            // failedMessages chứa đúng các mail bị lỗi (khóa là SimpleMailMessage gốc), rỗng nếu lỗi cả lô
+            Map<Object, Exception> failed = e.getFailedMessages();
+            for (PendingMail pending : batch) {
+                if (failed.isEmpty() || failed.containsKey(pending.message)) {
+                    retry(pending, e);
+                } else {
+                    sent.increment();
+                }
+            }
+        } catch (MailException e) {
+            // lỗi kết nối/xác thực SMTP: cả lô chưa gửi được
+            batch.forEach(pending -> retry(pending, e));
+        } finally {
+            sendTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void retry(PendingMail pending, Exception cause) {
+        if (pending.attempt >= maxAttempts) {
+            toDeadLetter(pending, cause.getMessage());
+            return;
+        }
+        // đang tắt ứng dụng: retryScheduler đã/sắp shutdownNow nên không hẹn lại được
+        if (!running || retryScheduler.isShutdown()) {
+            toDeadLetter(pending, "ứng dụng đang tắt: " + cause.getMessage());
+            return;
+        }
+        // backoff tăng gấp đôi sau mỗi lần lỗi: backoffMs, 2*backoffMs, 4*backoffMs...
+        long delay = backoffMs << (pending.attempt - 1);
+        PendingMail next = new PendingMail(pending.message, pending.attempt + 1);
+        try {
+            retryScheduler.schedule(() -> {
+                if (!queue.offer(next)) {
+                    toDeadLetter(next, "hàng đợi đầy khi thử lại");
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+            retried.increment();
+            log.warn("Gửi mail đến {} lỗi (lần {}), thử lại sau {} ms: {}",
+                    recipients(pending.message), pending.attempt, delay, cause.getMessage());
+        } catch (RejectedExecutionException e) {
+            // stop() chen vào giữa lần kiểm tra ở trên và lúc hẹn lại
+            toDeadLetter(pending, "ứng dụng đang tắt: " + cause.getMessage());
+        }
+    }
+
+    // không ghi nội dung mail (chứa mã OTP) ra log
+    private void toDeadLetter(PendingMail pending, String reason) {
+        dead.increment();
+        deadLetter.error("Không gửi được mail đến {} - tiêu đề \"{}\" sau {} lần thử: {}",
+                recipients(pending.message), pending.message.getSubject(), pending.attempt, reason);
+    }
+
+    private static String recipients(SimpleMailMessage message) {
+        return Arrays.toString(message.getTo());
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class PendingMail {
+        private final SimpleMailMessage message;
+        private final int attempt;
+
+        private PendingMail(SimpleMailMessage message, int attempt) {
+            this.message = message;
+            this.attempt = attempt;
+        }
+    }
+}
@@ -4,6 +4,8 @@ import com.example.backendplantshop.entity.Deposit;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.List;
+
 @Mapper
 public interface DepositMapper {
     void insert(Deposit deposit);
@@ -14,6 +16,8 @@ public interface DepositMapper {
 
     Deposit findLatestByOrderId(@Param("orderID") int orderId);
 
+    List<Deposit> findByOrderIds(@Param("orderIDs") List<Integer> orderIds);
+
     Deposit findByMomoTransId(@Param("transID") String momoTransId);
 }
 
@@ -8,8 +8,8 @@ import org.apache.ibatis.annotations.Param;
 public interface EmailOtpMapper {
     void insertOtp(EmailOtp emailOtp);
     EmailOtp findByEmailAndOtp(@Param("email") String email, @Param("otpCode") String otpCode);
-    void markAsUsed(@Param("otpId") int otpId);
-//    void deleteExpiredOtps();
+    int markAsUsed(@Param("otpId") int otpId);
+    int deleteExpiredOtps(@Param("limit") int limit);
 //    EmailOtp findLatestByEmail(@Param("email") String email);
     void updateUserIdByEmailAndOtp(@Param("email") String email, @Param("otpCode") String otpCode, @Param("userId") Integer userId);
 //    EmailOtp findByEmailAndOtpForMark(@Param("email") String email, @Param("otpCode") String otpCode);
@@ -0,0 +1,33 @@
+package com.example.backendplantshop.mapper;
+
+import com.example.backendplantshop.entity.MoMoCallbackInbox;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface MoMoCallbackInboxMapper {
+    // trả về 0 nếu IPN này đã nằm trong inbox (MoMo gửi lại)
+    int insertIfAbsent(MoMoCallbackInbox inbox);
+
+    MoMoCallbackInbox findById(@Param("inboxId") long inboxId);
+
+    List<Long> findDueIds(@Param("limit") int limit);
+
+    // nhận dòng để xử lý; trả về 0 nếu worker/instance khác đã nhận hoặc chưa đến hạn
+    int claim(@Param("inboxId") long inboxId, @Param("leaseMs") long leaseMs);
+
+    int markDone(@Param("inboxId") long inboxId);
+
+    int markRetry(@Param("inboxId") long inboxId, @Param("delayMs") long delayMs, @Param("lastError") String lastError);
+
+    int markFailed(@Param("inboxId") long inboxId, @Param("lastError") String lastError);
+
+    long countPending();
+
+    LocalDateTime findOldestPendingReceivedAt();
+
+    int deleteDone(@Param("retentionDays") int retentionDays, @Param("limit") int limit);
+}
@@ -0,0 +1,10 @@
+package com.example.backendplantshop.mapper;
+
+import com.example.backendplantshop.entity.MoMoCallback;
+import org.apache.ibatis.annotations.Mapper;
+
+@Mapper
+public interface MoMoCallbackMapper {
+    // trả về 0 nếu (partner_code, momo_order_id, trans_id) đã có, tức IPN này đã được xử lý
+    int insertIfAbsent(MoMoCallback callback);
+}
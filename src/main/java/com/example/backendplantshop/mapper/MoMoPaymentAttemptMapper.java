@@ -0,0 +1,31 @@
+package com.example.backendplantshop.mapper;
+
+import com.example.backendplantshop.entity.MoMoPaymentAttempt;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+@Mapper
+public interface MoMoPaymentAttemptMapper {
+    void insert(MoMoPaymentAttempt attempt);
+
+    // request MoMo mới nhất của các đơn còn payment PROCESSING, tạo trong khoảng [maxAgeHours trước, minAgeMinutes trước]
+    List<MoMoPaymentAttempt> findStaleOrderPayments(@Param("minAgeMinutes") int minAgeMinutes,
+                                                    @Param("maxAgeHours") int maxAgeHours,
+                                                    @Param("recheckMinutes") int recheckMinutes,
+                                                    @Param("limit") int limit);
+
+    // tương tự cho đặt cọc còn paid = 0
+    List<MoMoPaymentAttempt> findStaleDeposits(@Param("minAgeMinutes") int minAgeMinutes,
+                                               @Param("maxAgeHours") int maxAgeHours,
+                                               @Param("recheckMinutes") int recheckMinutes,
+                                               @Param("limit") int limit);
+
+    // đơn đã hết payment PROCESSING (ORDER_PAYMENT) / đặt cọc đã paid = 1 (DEPOSIT)
+    boolean isSettled(@Param("momoOrderId") String momoOrderId);
+
+    int markChecked(@Param("momoOrderId") String momoOrderId,
+                    @Param("resultCode") Integer resultCode,
+                    @Param("reconciled") boolean reconciled);
+}
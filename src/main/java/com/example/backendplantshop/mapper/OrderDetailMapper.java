@@ -11,8 +11,10 @@ import java.util.Map;
 @Mapper
 public interface OrderDetailMapper {
     int insert(OrderDetails orderDetail);
+    int insertBatch(List<OrderDetails> orderDetails);
     OrderDetails findById(@Param("orderDetailID") int orderDetailId);
     List<OrderDetails> findByOrderId(@Param("orderID") int orderId);
+    List<OrderDetails> findByOrderIds(@Param("orderIDs") List<Integer> orderIds);
     void update(OrderDetails orderDetail);
     void delete(@Param("orderDetailID") int orderDetailId);
     void deleteByOrderId(@Param("orderID") int orderId);
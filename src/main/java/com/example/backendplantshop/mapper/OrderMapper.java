@@ -1,10 +1,15 @@
 package com.example.backendplantshop.mapper;
 
+import com.example.backendplantshop.dto.response.OrderExportRowDtoResponse;
 import com.example.backendplantshop.dto.response.OrderStatisticsDtoResponse;
 import com.example.backendplantshop.entity.Orders;
+import com.example.backendplantshop.enums.OrderSatus;
+import com.example.backendplantshop.enums.ShippingStatus;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Mapper
@@ -19,7 +24,24 @@ public interface OrderMapper {
 //                            @Param("shippingPhone") String shippingPhone);
     void delete(@Param("orderID") int orderId);
     List<Orders> getAll();
+
+    // Phân trang keyset theo (order_date, order_id) giảm dần
+    List<Orders> findPage(@Param("status") OrderSatus status,
+                          @Param("shippingStatus") ShippingStatus shippingStatus,
+                          @Param("userID") Integer userId,
+                          @Param("fromDate") LocalDateTime fromDate,
+                          @Param("toDate") LocalDateTime toDate,
+                          @Param("cursorDate") LocalDateTime cursorDate,
+                          @Param("cursorID") Integer cursorId,
+                          @Param("limit") int limit);
     
+    // Xuất đơn hàng dạng stream (Cursor giữ kết nối mở, phải gọi trong transaction)
+    Cursor<OrderExportRowDtoResponse> streamForExport(@Param("status") OrderSatus status,
+                                                      @Param("shippingStatus") ShippingStatus shippingStatus,
+                                                      @Param("userID") Integer userId,
+                                                      @Param("fromDate") LocalDateTime fromDate,
+                                                      @Param("toDate") LocalDateTime toDate);
+
     // Statistics methods
     OrderStatisticsDtoResponse getStatisticsByDate(@Param("year") int year, @Param("month") int month, @Param("day") int day);
     OrderStatisticsDtoResponse getStatisticsByMonth(@Param("year") int year, @Param("month") int month);
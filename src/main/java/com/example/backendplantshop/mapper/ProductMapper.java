@@ -4,11 +4,14 @@ import com.example.backendplantshop.entity.Products;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface ProductMapper {
     Products findById(@Param("productID") int id);
+    List<Products> findByIds(@Param("productIDs") List<Integer> ids);
      List<Products> getAll();
      Products findByProductName_Size_Category(@Param("productName") String productName, @Param("size") String size, @Param("categoryId") int categoryId);
      int insert(Products products);
@@ -20,5 +23,18 @@ public interface ProductMapper {
     Products findByIdDeleted(@Param("productID")int id);
     void restoreProduct(@Param("productID")int id);
     void updateProductQuantity(@Param("productID") int productId, @Param("quantity") int quantity);
+    // Giữ hàng có điều kiện: trả về số sản phẩm đã trừ được, nhỏ hơn quantities.size() nghĩa là có sản phẩm không đủ hàng
+    int reserveStock(@Param("quantities") Map<Integer, Integer> quantitiesByProductId);
     void restoreProductQuantity(@Param("productID") int productId, @Param("quantity") int quantity);
+
+    // Chỉ lấy các cột dùng để lọc (category_id, size, price, out_of_stock) để dựng ProductFacetIndex
+    List<Products> getFacetRows();
+    // Trang sản phẩm theo bộ lọc storefront, tổng số bản ghi lấy từ ProductFacetIndex nên không cần COUNT(*)
+    List<Products> findFiltered(@Param("categoryIDs") List<Integer> categoryIds,
+                                @Param("sizes") List<String> sizes,
+                                @Param("minPrice") BigDecimal minPrice,
+                                @Param("maxPrice") BigDecimal maxPrice,
+                                @Param("outOfStock") Boolean outOfStock,
+                                @Param("offset") int offset,
+                                @Param("limit") int limit);
 }
@@ -0,0 +1,12 @@
+package com.example.backendplantshop.mapper;
+
+import com.example.backendplantshop.entity.UserIdentity;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+@Mapper
+public interface UserIdentityMapper {
+    UserIdentity findByProviderAndSubject(@Param("provider") String provider, @Param("subject") String subject);
+
+    void insert(UserIdentity identity);
+}
@@ -11,7 +11,9 @@ public interface UserMapper {
     Users findByEmail(String email);
     Users findByPhoneNumber(String phoneNumber);
     Users findByUsername(String username);
+    List<String> findUsernamesByPrefix(@Param("prefix") String prefix);
     Users findById(@Param("userID")int id);
+    List<Users> findByIds(@Param("userIDs") List<Integer> ids);
     
     // Tìm user không quan tâm đến is_deleted (để kiểm tra tồn tại)
     Users findByEmailIgnoreDeleted(String email);
@@ -0,0 +1,14 @@
+package com.example.backendplantshop.mapper;
+
+import com.example.backendplantshop.entity.UserTokenEpoch;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+@Mapper
+public interface UserTokenEpochMapper {
+    void upsert(@Param("userId") int userId, @Param("revokedBefore") long revokedBefore);
+
+    List<UserTokenEpoch> findRevokedSince(@Param("minRevokedBefore") long minRevokedBefore);
+}
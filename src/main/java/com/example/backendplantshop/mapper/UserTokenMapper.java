@@ -11,15 +11,20 @@ import java.util.List;
 public interface UserTokenMapper {
     void insertToken(UserTokens token);
 
-//    void revokeToken(@Param("tokenId") int tokenId);
+    void revokeToken(@Param("tokenId") int tokenId);
+
+    UserTokens findByTokenHash(@Param("tokenHash") String tokenHash);
 
     void revokeTokensByUser(@Param("userId") int userId);
 
+    int deleteExpiredTokens(@Param("limit") int limit);
+
+    int deleteRevokedTokens(@Param("limit") int limit);
+
 
 //    UserTokens findByToken(@Param("token") String token);
 //
 //    UserTokens findById(@Param("tokenId") int tokenId);
-    UserTokens findTokensByUserId( @Param("userId") int userId);
 
 //
 //    List<UserTokens> findValidTokensByUser(@Param("userId") int userId,
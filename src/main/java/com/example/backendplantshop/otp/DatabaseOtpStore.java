@@ -0,0 +1,48 @@
+package com.example.backendplantshop.otp;
+
+import com.example.backendplantshop.entity.EmailOtp;
+import com.example.backendplantshop.mapper.EmailOtpMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+// Lưu OTP trong bảng user_otp (hành vi cũ), dùng được khi chạy nhiều instance
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "otp.store", havingValue = "database", matchIfMissing = true)
+public class DatabaseOtpStore implements OtpStore {
+    private final EmailOtpMapper emailOtpMapper;
+
+    @Override
+    public void save(String email, Integer userId, String otpCode, LocalDateTime expiresAt) {
+        // user_id có thể NULL khi gửi OTP cho đăng ký (user chưa tồn tại)
+        EmailOtp emailOtp = EmailOtp.builder()
+                .email(email)
+                .user_id(userId) // NULL khi đăng ký, có giá trị khi quên mật khẩu
+                .otp_code(otpCode)
+                .created_at(LocalDateTime.now())
+                .expires_at(expiresAt)
+                .is_deleted(false)
+                .build();
+        emailOtpMapper.insertOtp(emailOtp);
+    }
+
+    @Override
+    public boolean matches(String email, String otpCode) {
+        return emailOtpMapper.findByEmailAndOtp(email, otpCode) != null;
+    }
+
+    @Override
+    public boolean consume(String email, String otpCode) {
+        EmailOtp emailOtp = emailOtpMapper.findByEmailAndOtp(email, otpCode);
+        // markAsUsed chỉ cập nhật dòng còn is_deleted = 0 nên 2 request đồng thời chỉ 1 bên thành công
+        return emailOtp != null && emailOtpMapper.markAsUsed(emailOtp.getOtp_id()) == 1;
+    }
+
+    @Override
+    public void attachUser(String email, String otpCode, Integer userId) {
+        emailOtpMapper.updateUserIdByEmailAndOtp(email, otpCode, userId);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.backendplantshop.otp;
+
+import com.example.backendplantshop.util.TransactionUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Lưu OTP trong bộ nhớ theo email, không chạm DB. Mỗi email chỉ giữ mã mới nhất (gửi lại thì mã cũ hết hiệu lực),
+// nhập sai quá max-attempts lần thì mã bị hủy. Chỉ dùng khi chạy 1 instance (hoặc sticky session theo email)
+// vì instance khác không thấy mã; khởi động lại ứng dụng thì các mã đang chờ bị mất.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "otp.store", havingValue = "memory")
+public class InMemoryOtpStore implements OtpStore {
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final int maxAttempts;
+
+    public InMemoryOtpStore(@Value("${otp.max-attempts:5}") int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    public void save(String email, Integer userId, String otpCode, LocalDateTime expiresAt) {
+        long expiresAtMillis = expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        entries.put(email, new Entry(otpCode, expiresAtMillis));
+    }
+
+    @Override
+    public boolean matches(String email, String otpCode) {
+        return check(email, entries.get(email), otpCode);
+    }
+
+    @Override
+    public boolean consume(String email, String otpCode) {
+        Entry entry = entries.get(email);
+        // nhập sai khi consume cũng bị đếm như matches
+        if (!check(email, entry, otpCode)) {
+            return false;
+        }
+        // remove(key, value) là thao tác nguyên tử: 2 request dùng cùng mã thì chỉ 1 bên xóa được
+        if (!entries.remove(email, entry)) {
+            return false;
+        }
+        // đăng ký/đổi mật khẩu rollback thì trả lại mã (giống bảng user_otp), trừ khi đã có mã mới hơn
+        TransactionUtil.runAfterRollback(() -> entries.putIfAbsent(email, entry));
+        return true;
+    }
+
+    private boolean check(String email, Entry entry, String otpCode) {
+        if (entry == null) {
+            return false;
+        }
+        if (entry.isExpired(System.currentTimeMillis())) {
+            entries.remove(email, entry);
+            return false;
+        }
+        if (entry.matches(otpCode)) {
+            return true;
+        }
+        // nhập sai: tăng số lần thử, quá giới hạn thì hủy mã để chặn dò 6 chữ số
+        if (entry.attempts.incrementAndGet() >= maxAttempts) {
+            entries.remove(email, entry);
+            log.warn("Hủy OTP của email {} vì nhập sai quá {} lần", email, maxAttempts);
+        }
+        return false;
+    }
+
+    @Override
+    public void attachUser(String email, String otpCode, Integer userId) {
+        // mã đã bị xóa khi consume, không có bản ghi nào để gắn user_id
+    }
+
+    // dọn mã hết hạn mà không ai nhập
+    @Scheduled(fixedDelayString = "${otp.sweep-ms:60000}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.isExpired(now));
+    }
+
+    private static final class Entry {
+        private final byte[] code;
+        private final long expiresAtMillis;
+        private final AtomicInteger attempts = new AtomicInteger();
+
+        private Entry(String code, long expiresAtMillis) {
+            this.code = code.getBytes(StandardCharsets.UTF_8);
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAtMillis;
+        }
+
+        // so sánh thời gian hằng để không lộ số chữ số đúng qua thời gian phản hồi
+        private boolean matches(String otpCode) {
+            return otpCode != null && MessageDigest.isEqual(code, otpCode.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
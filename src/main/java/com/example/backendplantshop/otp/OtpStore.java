@@ -0,0 +1,17 @@
+package com.example.backendplantshop.otp;
+
+import java.time.LocalDateTime;
+
+// Nơi lưu OTP phía sau OtpService, chọn bằng otp.store:
+// database (mặc định, bảng user_otp qua EmailOtpMapper) hoặc memory (map trong bộ nhớ có TTL, không chạm DB)
+public interface OtpStore {
+    void save(String email, Integer userId, String otpCode, LocalDateTime expiresAt);
+
+    // kiểm tra mã còn hiệu lực, không đánh dấu đã dùng
+    boolean matches(String email, String otpCode);
+
+    // đánh dấu đã dùng, chỉ đúng 1 lời gọi trả về true cho mỗi mã
+    boolean consume(String email, String otpCode);
+
+    void attachUser(String email, String otpCode, Integer userId);
+}
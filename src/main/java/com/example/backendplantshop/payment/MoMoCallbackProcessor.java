@@ -0,0 +1,255 @@
+package com.example.backendplantshop.payment;
+
+import com.example.backendplantshop.dto.request.momo.MoMoCallbackRequest;
+import com.example.backendplantshop.entity.MoMoCallbackInbox;
+import com.example.backendplantshop.mapper.MoMoCallbackInboxMapper;
+import com.example.backendplantshop.service.intf.MoMoCallbackService;
+import com.example.backendplantshop.util.TransactionUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Inbox bền cho IPN MoMo: controller chỉ lưu IPN đã verify vào bảng momo_callback_inbox rồi trả 200 ngay,
+// các worker áp dụng IPN (MoMoCallbackService) ngoài request của MoMo nên DB chậm không làm MoMo timeout/gửi lại.
+// IPN mới được đẩy thẳng cho worker; poll() định kỳ nhặt dòng còn sót (pool đầy, đến hạn thử lại, tiến trình chết giữa chừng).
+// Lỗi thì thử lại với backoff tăng dần, quá maxAttempts thì FAILED và ghi log dead-letter "momo.inbox.dead-letter".
+@Slf4j
+@Component
+public class MoMoCallbackProcessor {
+    private static final Logger deadLetter = LoggerFactory.getLogger("momo.inbox.dead-letter");
+    private static final int CLEANUP_BATCH = 1000;
+
+    private final MoMoCallbackInboxMapper inboxMapper;
+    private final MoMoCallbackService momoCallbackService;
+    private final ObjectMapper objectMapper;
+    private final int workerCount;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long backoffMs;
+    private final long leaseMs;
+    private final int retentionDays;
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet(); // id đã giao cho worker trên instance này
+    private final AtomicLong depth = new AtomicLong();
+    private final AtomicLong oldestAgeMs = new AtomicLong();
+    private final Counter received;
+    private final Counter duplicates;
+    private final Counter processed;
+    private final Counter retried;
+    private final Counter dead;
+    private final Timer lag;
+    private ThreadPoolExecutor workers;
+    private volatile boolean running;
+
+    public MoMoCallbackProcessor(MoMoCallbackInboxMapper inboxMapper,
+                                 MoMoCallbackService momoCallbackService,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${momo.inbox.workers:4}") int workerCount,
+                                 @Value("${momo.inbox.queue-capacity:200}") int queueCapacity,
+                                 @Value("${momo.inbox.batch-size:50}") int batchSize,
+                                 @Value("${momo.inbox.max-attempts:8}") int maxAttempts,
+                                 @Value("${momo.inbox.backoff-ms:2000}") long backoffMs,
+                                 @Value("${momo.inbox.lease-ms:300000}") long leaseMs,
+                                 @Value("${momo.inbox.retention-days:7}") int retentionDays) {
+        this.inboxMapper = inboxMapper;
+        this.momoCallbackService = momoCallbackService;
+        this.objectMapper = objectMapper;
+        this.workerCount = workerCount;
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.backoffMs = backoffMs;
+        this.leaseMs = leaseMs;
+        this.retentionDays = retentionDays;
+        this.received = meterRegistry.counter("momo.inbox.received");
+        this.duplicates = meterRegistry.counter("momo.inbox.duplicates");
+        this.processed = meterRegistry.counter("momo.inbox.processed");
+        this.retried = meterRegistry.counter("momo.inbox.failures", "outcome", "retry");
+        this.dead = meterRegistry.counter("momo.inbox.failures", "outcome", "dead");
+        this.lag = Timer.builder("momo.inbox.lag")
+                .description("Thời gian từ lúc nhận IPN đến lúc áp dụng xong")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        // cập nhật mỗi lần poll(), đếm cả instance khác vì đọc từ DB
+        meterRegistry.gauge("momo.inbox.depth", depth);
+        meterRegistry.gauge("momo.inbox.oldest.age.ms", oldestAgeMs);
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        AtomicInteger sequence = new AtomicInteger();
+        workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "momo-inbox-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // IPN chưa xử lý vẫn nằm trong DB, lần chạy sau (hoặc instance khác) sẽ nhặt lại
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+    }
+
+    // Lưu IPN đã verify chữ ký. Trả về false nếu là IPN MoMo gửi lại (đã có trong inbox hoặc vừa xử lý xong).
+    // Lỗi DB thì ném exception để controller trả 500 và MoMo gửi lại sau.
+    public boolean enqueue(MoMoCallbackRequest callbackRequest) {
+        if (momoCallbackService.isRecentlyProcessed(callbackRequest)) {
+            duplicates.increment();
+            return false;
+        }
+        MoMoCallbackInbox inbox = MoMoCallbackInbox.builder()
+                .partner_code(callbackRequest.getPartnerCode())
+                .momo_order_id(callbackRequest.getOrderId())
+                .trans_id(callbackRequest.getTransId() != null ? callbackRequest.getTransId() : 0L)
+                .payload(toJson(callbackRequest))
+                .received_at(LocalDateTime.now())
+                .build();
+        if (inboxMapper.insertIfAbsent(inbox) == 0) {
+            duplicates.increment();
+            return false;
+        }
+        received.increment();
+        long inboxId = inbox.getInbox_id();
+        TransactionUtil.runAfterCommit(() -> dispatch(inboxId));
+        return true;
+    }
+
+    @Scheduled(initialDelayString = "${momo.inbox.poll-initial-delay-ms:10000}", fixedDelayString = "${momo.inbox.poll-interval-ms:1000}")
+    public void poll() {
+        if (!running) {
+            return;
+        }
+        try {
+            refreshStats();
+            int room = workers.getQueue().remainingCapacity();
+            if (room == 0) {
+                return;
+            }
+            List<Long> dueIds = inboxMapper.findDueIds(Math.min(room, batchSize));
+            dueIds.forEach(this::dispatch);
+        } catch (RuntimeException e) {
+            log.error("Lỗi khi quét momo_callback_inbox", e);
+        }
+    }
+
+    // xóa dòng DONE cũ theo lô nhỏ; dòng FAILED giữ lại để xử lý tay
+    @Scheduled(initialDelayString = "${momo.inbox.cleanup-initial-delay-ms:120000}", fixedDelayString = "${momo.inbox.cleanup-interval-ms:3600000}")
+    public void cleanup() {
+        long total = 0;
+        int deleted;
+        try {
+            do {
+                deleted = inboxMapper.deleteDone(retentionDays, CLEANUP_BATCH);
+                total += deleted;
+            } while (deleted == CLEANUP_BATCH);
+        } catch (RuntimeException e) {
+            log.error("Lỗi khi dọn momo_callback_inbox, dừng lần chạy này", e);
+        }
+        if (total > 0) {
+            log.info("Đã dọn {} IPN MoMo đã xử lý quá {} ngày", total, retentionDays);
+        }
+    }
+
+    private void refreshStats() {
+        depth.set(inboxMapper.countPending());
+        LocalDateTime oldest = inboxMapper.findOldestPendingReceivedAt();
+        oldestAgeMs.set(oldest != null ? Math.max(0, Duration.between(oldest, LocalDateTime.now()).toMillis()) : 0);
+    }
+
+    // pool đầy thì bỏ qua, dòng vẫn PENDING nên poll() sẽ giao lại sau
+    private void dispatch(long inboxId) {
+        if (!running || !inFlight.add(inboxId)) {
+            return;
+        }
+        try {
+            workers.execute(() -> process(inboxId));
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(inboxId);
+            log.debug("Pool xử lý IPN đầy, để poll() giao lại inbox {}", inboxId);
+        }
+    }
+
+    private void process(long inboxId) {
+        try {
+            if (inboxMapper.claim(inboxId, leaseMs) == 0) {
+                return; // worker khác đã nhận hoặc chưa đến hạn thử lại
+            }
+            MoMoCallbackInbox inbox = inboxMapper.findById(inboxId);
+            try {
+                MoMoCallbackRequest callbackRequest = objectMapper.readValue(inbox.getPayload(), MoMoCallbackRequest.class);
+                momoCallbackService.process(callbackRequest);
+                inboxMapper.markDone(inboxId);
+                processed.increment();
+                lag.record(Duration.between(inbox.getReceived_at(), LocalDateTime.now()));
+            } catch (Exception e) {
+                fail(inbox, e);
+            }
+        } catch (RuntimeException e) {
+            // lỗi DB khi nhận/đánh dấu: dòng vẫn PROCESSING, hết leaseMs sẽ được nhận lại
+            log.error("Lỗi khi xử lý momo_callback_inbox {}", inboxId, e);
+        } finally {
+            inFlight.remove(inboxId);
+        }
+    }
+
+    private void fail(MoMoCallbackInbox inbox, Exception cause) {
+        String error = truncate(cause.getClass().getSimpleName() + ": " + cause.getMessage());
+        if (inbox.getAttempts() >= maxAttempts) {
+            inboxMapper.markFailed(inbox.getInbox_id(), error);
+            dead.increment();
+            deadLetter.error("Bỏ IPN MoMo inbox {} (orderId={}, transId={}) sau {} lần thử: {}",
+                    inbox.getInbox_id(), inbox.getMomo_order_id(), inbox.getTrans_id(), inbox.getAttempts(), error);
+            return;
+        }
+        // backoff tăng gấp đôi sau mỗi lần lỗi: backoffMs, 2*backoffMs, 4*backoffMs...
+        long delay = backoffMs << (inbox.getAttempts() - 1);
+        inboxMapper.markRetry(inbox.getInbox_id(), delay, error);
+        retried.increment();
+        log.warn("Áp dụng IPN MoMo inbox {} lỗi (lần {}), thử lại sau {} ms: {}",
+                inbox.getInbox_id(), inbox.getAttempts(), delay, error);
+    }
+
+    private String toJson(MoMoCallbackRequest callbackRequest) {
+        try {
+            return objectMapper.writeValueAsString(callbackRequest);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Không serialize được IPN MoMo", e);
+        }
+    }
+
+    private static String truncate(String value) {
+        return value.length() <= 500 ? value : value.substring(0, 500);
+    }
+}
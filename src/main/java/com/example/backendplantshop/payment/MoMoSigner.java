@@ -0,0 +1,166 @@
+package com.example.backendplantshop.payment;
+
+import com.example.backendplantshop.config.MoMoConfig;
+import com.example.backendplantshop.dto.request.momo.MoMoCallbackRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+// Ký / kiểm tra chữ ký HMAC-SHA256 cho MoMo.
+// Mỗi thread giữ sẵn 1 Mac đã init với secretKey (Mac không thread-safe, doFinal tự reset để dùng lại),
+// hex encode bằng bảng tra và raw hash dựng bằng StringBuilder đủ dung lượng, không qua String.format
+@Component
+public class MoMoSigner {
+    private static final String HMAC_SHA256 = "HmacSHA256";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String accessKey;
+    private final String secretKey;
+    private final ThreadLocal<Mac> macs;
+
+    @Autowired
+    public MoMoSigner(MoMoConfig momoConfig) {
+        this(momoConfig.getAccessKey(), momoConfig.getSecretKey());
+    }
+
+    public MoMoSigner(String accessKey, String secretKey) {
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_SHA256);
+            //lấy chuỗi secretKey chuyển thành mảng byte bằng UTF-8
+            mac.init(new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), HMAC_SHA256));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Lỗi khi tạo signature: " + e.getMessage(), e);
+        }
+    }
+
+    // Tạo chữ ký số (signature) cho MoMo Payment
+    public String sign(String rawHash) {
+        // Validate credentials
+        if (secretKey == null || secretKey.trim().isEmpty()) {
+            throw new IllegalArgumentException("MOMO_SECRET_KEY không được để trống. Vui lòng kiểm tra file .env");
+        }
+        if (accessKey == null || accessKey.trim().isEmpty()) {
+            throw new IllegalArgumentException("MOMO_ACCESS_KEY không được để trống. Vui lòng kiểm tra file .env");
+        }
+        return toHex(macs.get().doFinal(rawHash.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // so sánh thời gian hằng để không lộ chữ ký đúng qua thời gian phản hồi
+    public boolean verify(String signature, String rawHash) {
+        if (signature == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(sign(rawHash).getBytes(StandardCharsets.US_ASCII),
+                signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Raw hash khi tạo payment, đúng thứ tự field theo tài liệu MoMo
+    public String createRawHash(long amount, String extraData, String ipnUrl, String orderId, String orderInfo,
+                                String partnerCode, String redirectUrl, String requestId, String requestType) {
+        StringBuilder raw = new StringBuilder(160 + length(accessKey) + length(extraData) + length(ipnUrl)
+                + length(orderId) + length(orderInfo) + length(partnerCode) + length(redirectUrl)
+                + length(requestId) + length(requestType));
+        raw.append("accessKey=").append(accessKey)
+                .append("&amount=").append(amount)
+                .append("&extraData=").append(extraData)
+                .append("&ipnUrl=").append(ipnUrl)
+                .append("&orderId=").append(orderId)
+                .append("&orderInfo=").append(orderInfo)
+                .append("&partnerCode=").append(partnerCode)
+                .append("&redirectUrl=").append(redirectUrl)
+                .append("&requestId=").append(requestId)
+                .append("&requestType=").append(requestType);
+        return raw.toString();
+    }
+
+    // Raw hash cho API tra trạng thái giao dịch
+    public String createQueryRawHash(String orderId, String partnerCode, String requestId) {
+        StringBuilder raw = new StringBuilder(48 + length(accessKey) + length(orderId) + length(partnerCode)
+                + length(requestId));
+        raw.append("accessKey=").append(accessKey)
+                .append("&orderId=").append(orderId)
+                .append("&partnerCode=").append(partnerCode)
+                .append("&requestId=").append(requestId);
+        return raw.toString();
+    }
+
+    // Raw hash để verify IPN, field null thì để trống
+    public String createCallbackRawHash(MoMoCallbackRequest callback) {
+        StringBuilder raw = new StringBuilder(256 + length(accessKey) + length(callback.getExtraData())
+                + length(callback.getMessage()) + length(callback.getOrderId()) + length(callback.getOrderInfo())
+                + length(callback.getOrderType()) + length(callback.getPartnerCode()) + length(callback.getPayType())
+                + length(callback.getRequestId()));
+        raw.append("accessKey=");
+        appendOrEmpty(raw, accessKey);
+        raw.append("&amount=");
+        appendOrEmpty(raw, callback.getAmount());
+        raw.append("&extraData=");
+        appendOrEmpty(raw, callback.getExtraData());
+        raw.append("&message=");
+        appendOrEmpty(raw, callback.getMessage());
+        raw.append("&orderId=");
+        appendOrEmpty(raw, callback.getOrderId());
+        raw.append("&orderInfo=");
+        appendOrEmpty(raw, callback.getOrderInfo());
+        raw.append("&orderType=");
+        appendOrEmpty(raw, callback.getOrderType());
+        raw.append("&partnerCode=");
+        appendOrEmpty(raw, callback.getPartnerCode());
+        raw.append("&payType=");
+        appendOrEmpty(raw, callback.getPayType());
+        raw.append("&requestId=");
+        appendOrEmpty(raw, callback.getRequestId());
+        raw.append("&responseTime=");
+        appendOrEmpty(raw, callback.getResponseTime());
+        raw.append("&resultCode=");
+        appendOrEmpty(raw, callback.getResultCode());
+        raw.append("&transId=");
+        appendOrEmpty(raw, callback.getTransId());
+        return raw.toString();
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int value = bytes[i] & 0xff;
+            hex[i * 2] = HEX[value >>> 4];
+            hex[i * 2 + 1] = HEX[value & 0x0f];
+        }
+        return new String(hex);
+    }
+
+    private static void appendOrEmpty(StringBuilder raw, String value) {
+        if (value != null) {
+            raw.append(value);
+        }
+    }
+
+    // append(long)/append(int) ghi thẳng chữ số vào buffer, không tạo String trung gian
+    private static void appendOrEmpty(StringBuilder raw, Long value) {
+        if (value != null) {
+            raw.append(value.longValue());
+        }
+    }
+
+    private static void appendOrEmpty(StringBuilder raw, Integer value) {
+        if (value != null) {
+            raw.append(value.intValue());
+        }
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 4;
+    }
+}
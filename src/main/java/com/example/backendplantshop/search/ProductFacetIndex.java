@@ -0,0 +1,244 @@
+package com.example.backendplantshop.search;
+
+import com.example.backendplantshop.entity.Products;
+import com.example.backendplantshop.mapper.ProductMapper;
+import com.example.backendplantshop.util.TransactionUtil;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Bitset theo danh mục, size và trạng thái hết hàng của các sản phẩm chưa bị xóa (mỗi sản phẩm 1 bit theo ordinal).
+// Dùng để đếm tổng số kết quả và số lượng từng facet bằng phép AND/cardinality thay vì quét lại bảng products.
+@Slf4j
+@Component
+public class ProductFacetIndex {
+    private final ProductMapper productMapper;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private FacetData data = new FacetData();
+
+    public ProductFacetIndex(ProductMapper productMapper) {
+        this.productMapper = productMapper;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class FacetCounts {
+        private final int total;
+        private final Map<Integer, Integer> categoryCounts;
+        private final Map<String, Integer> sizeCounts;
+        private final int inStockCount;
+        private final int outOfStockCount;
+        private final BigDecimal minPrice; // null nếu không có sản phẩm nào
+        private final BigDecimal maxPrice;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        try {
+            FacetData fresh = new FacetData();
+            for (Products product : productMapper.getFacetRows()) {
+                fresh.add(product);
+            }
+            lock.writeLock().lock();
+            try {
+                data = fresh;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Đã dựng facet index cho {} sản phẩm", fresh.alive.cardinality());
+        } catch (RuntimeException e) {
+            log.error("Không dựng được facet index sản phẩm", e);
+        }
+    }
+
+    // Đọc lại 1 sản phẩm sau khi commit; sản phẩm đã xóa/không tồn tại thì bị gỡ khỏi index
+    public void reindex(int productId) {
+        TransactionUtil.runAfterCommit(() -> {
+            Products product = productMapper.findById(productId);
+            lock.writeLock().lock();
+            try {
+                data.remove(productId);
+                if (product != null) {
+                    data.add(product);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // Số lượng của mỗi facet được tính với mọi bộ lọc trừ chính facet đó,
+    // để người dùng thấy chọn thêm 1 danh mục/size khác sẽ ra bao nhiêu sản phẩm
+    public FacetCounts count(List<Integer> categoryIds, List<String> sizes,
+                             BigDecimal minPrice, BigDecimal maxPrice, Boolean outOfStock) {
+        lock.readLock().lock();
+        try {
+            FacetData index = data;
+            BitSet categoryMask = categoryIds == null || categoryIds.isEmpty() ? null : union(index.byCategory, categoryIds);
+            BitSet sizeMask = sizes == null || sizes.isEmpty() ? null : union(index.bySize, sizes);
+            BitSet priceMask = minPrice == null && maxPrice == null ? null : index.priceRange(minPrice, maxPrice);
+            BitSet stockMask = null;
+            if (outOfStock != null) {
+                stockMask = outOfStock ? index.outOfStock : without(index.alive, index.outOfStock);
+            }
+
+            int total = intersect(index.alive, categoryMask, sizeMask, priceMask, stockMask).cardinality();
+
+            Map<Integer, Integer> categoryCounts = new TreeMap<>();
+            BitSet withoutCategory = intersect(index.alive, sizeMask, priceMask, stockMask);
+            index.byCategory.forEach((categoryId, bits) -> {
+                int count = intersect(withoutCategory, bits).cardinality();
+                if (count > 0) {
+                    categoryCounts.put(categoryId, count);
+                }
+            });
+
+            Map<String, Integer> sizeCounts = new TreeMap<>();
+            BitSet withoutSize = intersect(index.alive, categoryMask, priceMask, stockMask);
+            index.bySize.forEach((size, bits) -> {
+                int count = intersect(withoutSize, bits).cardinality();
+                if (count > 0) {
+                    sizeCounts.put(size, count);
+                }
+            });
+
+            BitSet withoutStock = intersect(index.alive, categoryMask, sizeMask, priceMask);
+            int outOfStockCount = intersect(withoutStock, index.outOfStock).cardinality();
+            int inStockCount = withoutStock.cardinality() - outOfStockCount;
+
+            BitSet withoutPrice = intersect(index.alive, categoryMask, sizeMask, stockMask);
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int ordinal = withoutPrice.nextSetBit(0); ordinal >= 0; ordinal = withoutPrice.nextSetBit(ordinal + 1)) {
+                min = Math.min(min, index.priceCents[ordinal]);
+                max = Math.max(max, index.priceCents[ordinal]);
+            }
+            boolean hasPrice = min != Long.MAX_VALUE;
+
+            return new FacetCounts(total, categoryCounts, sizeCounts, inStockCount, outOfStockCount,
+                    hasPrice ? BigDecimal.valueOf(min, 2) : null,
+                    hasPrice ? BigDecimal.valueOf(max, 2) : null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static <K> BitSet union(Map<K, BitSet> bitsByKey, List<K> keys) {
+        BitSet result = new BitSet();
+        for (K key : keys) {
+            BitSet bits = bitsByKey.get(key);
+            if (bits != null) {
+                result.or(bits);
+            }
+        }
+        return result;
+    }
+
+    // bản sao của base AND với các mask khác null (null = không lọc)
+    private static BitSet intersect(BitSet base, BitSet... masks) {
+        BitSet result = (BitSet) base.clone();
+        for (BitSet mask : masks) {
+            if (mask != null) {
+                result.and(mask);
+            }
+        }
+        return result;
+    }
+
+    private static BitSet without(BitSet base, BitSet excluded) {
+        BitSet result = (BitSet) base.clone();
+        result.andNot(excluded);
+        return result;
+    }
+
+    // giá lưu theo đơn vị 1/100 để so sánh bằng long khi quét khoảng giá
+    private static long toCents(BigDecimal price, RoundingMode rounding) {
+        return price.movePointRight(2).setScale(0, rounding).longValue();
+    }
+
+    private static String sizeKey(String size) {
+        return size == null ? "" : size.trim();
+    }
+
+    private static final class FacetData {
+        private final Map<Integer, Integer> ordinalByProductId = new HashMap<>();
+        private final ArrayDeque<Integer> freeOrdinals = new ArrayDeque<>();
+        private final BitSet alive = new BitSet();
+        private final BitSet outOfStock = new BitSet();
+        private final Map<Integer, BitSet> byCategory = new HashMap<>();
+        private final Map<String, BitSet> bySize = new HashMap<>();
+        private int[] categoryByOrdinal = new int[16];
+        private String[] sizeByOrdinal = new String[16];
+        private long[] priceCents = new long[16];
+        private int nextOrdinal;
+
+        private void add(Products product) {
+            Integer free = freeOrdinals.poll();
+            int ordinal = free != null ? free : nextOrdinal++;
+            if (ordinal == priceCents.length) {
+                categoryByOrdinal = Arrays.copyOf(categoryByOrdinal, ordinal * 2);
+                sizeByOrdinal = Arrays.copyOf(sizeByOrdinal, ordinal * 2);
+                priceCents = Arrays.copyOf(priceCents, ordinal * 2);
+            }
+            String size = sizeKey(product.getSize());
+            categoryByOrdinal[ordinal] = product.getCategory_id();
+            sizeByOrdinal[ordinal] = size;
+            priceCents[ordinal] = product.getPrice() != null ? toCents(product.getPrice(), RoundingMode.HALF_UP) : 0;
+
+            ordinalByProductId.put(product.getProduct_id(), ordinal);
+            alive.set(ordinal);
+            outOfStock.set(ordinal, product.isOut_of_stock());
+            byCategory.computeIfAbsent(product.getCategory_id(), key -> new BitSet()).set(ordinal);
+            bySize.computeIfAbsent(size, key -> new BitSet()).set(ordinal);
+        }
+
+        private void remove(int productId) {
+            Integer ordinal = ordinalByProductId.remove(productId);
+            if (ordinal == null) {
+                return;
+            }
+            alive.clear(ordinal);
+            outOfStock.clear(ordinal);
+            clear(byCategory, categoryByOrdinal[ordinal], ordinal);
+            clear(bySize, sizeByOrdinal[ordinal], ordinal);
+            sizeByOrdinal[ordinal] = null;
+            freeOrdinals.push(ordinal);
+        }
+
+        private static <K> void clear(Map<K, BitSet> bitsByKey, K key, int ordinal) {
+            BitSet bits = bitsByKey.get(key);
+            if (bits != null) {
+                bits.clear(ordinal);
+                if (bits.isEmpty()) {
+                    bitsByKey.remove(key);
+                }
+            }
+        }
+
+        private BitSet priceRange(BigDecimal minPrice, BigDecimal maxPrice) {
+            long min = minPrice != null ? toCents(minPrice, RoundingMode.CEILING) : Long.MIN_VALUE;
+            long max = maxPrice != null ? toCents(maxPrice, RoundingMode.FLOOR) : Long.MAX_VALUE;
+            BitSet result = new BitSet(nextOrdinal);
+            for (int ordinal = alive.nextSetBit(0); ordinal >= 0; ordinal = alive.nextSetBit(ordinal + 1)) {
+                if (priceCents[ordinal] >= min && priceCents[ordinal] <= max) {
+                    result.set(ordinal);
+                }
+            }
+            return result;
+        }
+    }
+}
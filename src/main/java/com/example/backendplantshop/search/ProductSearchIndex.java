@@ -0,0 +1,444 @@
+package com.example.backendplantshop.search;
+
+import com.example.backendplantshop.entity.Category;
+import com.example.backendplantshop.entity.Products;
+import com.example.backendplantshop.mapper.CategoryMapper;
+import com.example.backendplantshop.mapper.ProductMapper;
+import com.example.backendplantshop.util.TransactionUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Index đảo ngược trong bộ nhớ trên tên, mô tả, size và tên danh mục của sản phẩm chưa bị xóa.
+// Dựng toàn bộ khi khởi động, sau đó ProductServiceImpl/CategoryServiceImpl cập nhật từng sản phẩm khi có thay đổi.
+// Xếp hạng theo BM25, hỗ trợ tìm theo tiền tố và sai chính tả nhẹ (1-2 ký tự).
+@Slf4j
+@Component
+public class ProductSearchIndex {
+    // trọng số từng field khi cộng tần suất từ, tên sản phẩm quan trọng nhất
+    private static final int NAME_WEIGHT = 3;
+    private static final int CATEGORY_WEIGHT = 2;
+    private static final int SIZE_WEIGHT = 1;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    // tham số BM25
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    // từ khớp theo tiền tố / gần đúng được tính điểm thấp hơn từ khớp chính xác
+    private static final float PREFIX_WEIGHT = 0.7f;
+    private static final float FUZZY_WEIGHT = 0.5f;
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MIN_FUZZY_LENGTH = 4;
+    private static final int MAX_PREFIX_EXPANSIONS = 32;
+    private static final int MAX_FUZZY_EXPANSIONS = 16;
+
+    private final ProductMapper productMapper;
+    private final CategoryMapper categoryMapper;
+    private final Timer searchTimer;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private IndexData data = new IndexData();
+
+    public ProductSearchIndex(ProductMapper productMapper, CategoryMapper categoryMapper, MeterRegistry meterRegistry) {
+        this.productMapper = productMapper;
+        this.categoryMapper = categoryMapper;
+        this.searchTimer = Timer.builder("product.search")
+                .description("Thời gian tìm kiếm trên index sản phẩm")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class SearchHits {
+        private final List<Integer> productIds; // đã xếp hạng, chỉ gồm trang được yêu cầu
+        private final int total;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        try {
+            Map<Integer, Map<String, Integer>> categoryTerms = new HashMap<>();
+            for (Category category : categoryMapper.getAll()) {
+                categoryTerms.put(category.getCategory_id(), analyzeCategory(category.getCategory_name()));
+            }
+            IndexData fresh = new IndexData();
+            for (Products product : productMapper.getAll()) {
+                fresh.add(product.getProduct_id(), product.getCategory_id(), analyzeProduct(product),
+                        categoryTerms.getOrDefault(product.getCategory_id(), Map.of()));
+            }
+            lock.writeLock().lock();
+            try {
+                data = fresh;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Đã dựng index tìm kiếm cho {} sản phẩm", fresh.docCount);
+        } catch (RuntimeException e) {
+            // không chặn khởi động ứng dụng, index sẽ được bổ sung dần qua các lần cập nhật sản phẩm
+            log.error("Không dựng được index tìm kiếm sản phẩm", e);
+        }
+    }
+
+    // Đọc lại 1 sản phẩm từ DB (sau khi commit) và cập nhật index; sản phẩm đã xóa/không tồn tại thì bị gỡ khỏi index
+    public void reindex(int productId) {
+        TransactionUtil.runAfterCommit(() -> {
+            Products product = productMapper.findById(productId);
+            Map<String, Integer> categoryTerms = Map.of();
+            if (product != null) {
+                Category category = categoryMapper.findById(product.getCategory_id());
+                categoryTerms = category != null ? analyzeCategory(category.getCategory_name()) : Map.of();
+            }
+            lock.writeLock().lock();
+            try {
+                data.remove(productId);
+                if (product != null) {
+                    data.add(productId, product.getCategory_id(), analyzeProduct(product), categoryTerms);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // Đổi tên danh mục: chỉ tính lại phần từ khóa danh mục của các sản phẩm thuộc danh mục đó
+    public void reindexCategory(int categoryId) {
+        TransactionUtil.runAfterCommit(() -> {
+            Category category = categoryMapper.findById(categoryId);
+            Map<String, Integer> categoryTerms = category != null ? analyzeCategory(category.getCategory_name()) : Map.of();
+            lock.writeLock().lock();
+            try {
+                data.replaceCategoryTerms(categoryId, categoryTerms);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public SearchHits search(String query, int offset, int limit) {
+        List<String> tokens = new ArrayList<>(new LinkedHashSet<>(SearchTokenizer.tokenize(query)));
+        if (tokens.isEmpty() || limit <= 0) {
+            return new SearchHits(List.of(), 0);
+        }
+        return searchTimer.record(() -> {
+            lock.readLock().lock();
+            try {
+                return search(data, tokens, offset, limit);
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    private SearchHits search(IndexData index, List<String> tokens, int offset, int limit) {
+        if (index.docCount == 0) {
+            return new SearchHits(List.of(), 0);
+        }
+        int capacity = index.docs.size();
+        float avgLength = (float) index.totalLength / index.docCount;
+        float[] scores = new float[capacity];
+        float[] tokenScores = new float[capacity];
+        int[] matchedTokens = new int[capacity];
+        int[] matched = new int[capacity];
+        int[] touched = new int[capacity];
+        int matchedCount = 0;
+
+        int[] lengths = index.lengths;
+        for (int t = 0; t < tokens.size(); t++) {
+            // mỗi từ trong câu truy vấn chỉ lấy điểm cao nhất trong các từ khớp (chính xác/tiền tố/gần đúng);
+            // chỉ từ cuối cùng được mở rộng theo tiền tố vì người dùng thường đang gõ dở từ đó
+            int touchedCount = 0;
+            for (Expansion expansion : expand(index, tokens.get(t), t == tokens.size() - 1)) {
+                Posting posting = expansion.posting;
+                float idf = expansion.idf;
+                for (int i = 0; i < posting.size; i++) {
+                    int ordinal = posting.ordinals[i];
+                    int tf = posting.freqs[i];
+                    float norm = K1 * (1 - B + B * lengths[ordinal] / avgLength);
+                    float score = expansion.weight * idf * tf * (K1 + 1) / (tf + norm);
+                    if (tokenScores[ordinal] == 0) {
+                        touched[touchedCount++] = ordinal;
+                    }
+                    if (score > tokenScores[ordinal]) {
+                        tokenScores[ordinal] = score;
+                    }
+                }
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                int ordinal = touched[i];
+                if (matchedTokens[ordinal] == 0) {
+                    matched[matchedCount++] = ordinal;
+                }
+                scores[ordinal] += tokenScores[ordinal];
+                matchedTokens[ordinal]++;
+                tokenScores[ordinal] = 0;
+            }
+        }
+
+        // ưu tiên sản phẩm khớp nhiều từ của câu truy vấn hơn
+        for (int i = 0; i < matchedCount; i++) {
+            int ordinal = matched[i];
+            scores[ordinal] = scores[ordinal] * matchedTokens[ordinal] / tokens.size();
+        }
+
+        // chỉ giữ top (offset + limit) trong heap thay vì sắp xếp toàn bộ kết quả; cùng điểm thì id nhỏ đứng trước
+        Comparator<Integer> worstFirst = (a, b) -> {
+            int compare = Float.compare(scores[a], scores[b]);
+            return compare != 0 ? compare : Integer.compare(index.docs.get(b).productId, index.docs.get(a).productId);
+        };
+        int keep = offset + limit;
+        PriorityQueue<Integer> top = new PriorityQueue<>(Math.min(keep, Math.max(matchedCount, 1)) + 1, worstFirst);
+        for (int i = 0; i < matchedCount; i++) {
+            int ordinal = matched[i];
+            if (top.size() < keep) {
+                top.offer(ordinal);
+                continue;
+            }
+            // so sánh trực tiếp với phần tử kém nhất để bỏ qua nhanh phần lớn kết quả mà không cần đụng tới heap
+            int worst = top.peek();
+            if (scores[ordinal] > scores[worst]
+                    || (scores[ordinal] == scores[worst] && index.docs.get(ordinal).productId < index.docs.get(worst).productId)) {
+                top.poll();
+                top.offer(ordinal);
+            }
+        }
+        List<Integer> ranked = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            ranked.add(index.docs.get(top.poll()).productId);
+        }
+        Collections.reverse(ranked);
+        List<Integer> page = offset < ranked.size() ? ranked.subList(offset, ranked.size()) : List.of();
+        return new SearchHits(new ArrayList<>(page), matchedCount);
+    }
+
+    private List<Expansion> expand(IndexData index, String token, boolean allowPrefix) {
+        List<Expansion> expansions = new ArrayList<>();
+        Posting exact = index.postings.get(token);
+        // idf của từ mở rộng không được vượt idf của từ khớp chính xác, nếu không 1 từ hiếm như "ho28"
+        // sẽ xếp trên sản phẩm có đúng từ "ho"
+        float maxIdf = Float.MAX_VALUE;
+        if (exact != null) {
+            maxIdf = idf(index, exact);
+            expansions.add(new Expansion(exact, 1f, maxIdf));
+        }
+        if (allowPrefix && token.length() >= MIN_PREFIX_LENGTH) {
+            int count = 0;
+            for (Posting posting : index.postings.subMap(token, false, token + Character.MAX_VALUE, false).values()) {
+                if (count++ == MAX_PREFIX_EXPANSIONS) {
+                    break;
+                }
+                expansions.add(new Expansion(posting, PREFIX_WEIGHT, Math.min(idf(index, posting), maxIdf)));
+            }
+        }
+        // gần đúng chỉ xét khi không có từ nào khớp, giữ nguyên ký tự đầu để giới hạn số từ phải so sánh
+        if (expansions.isEmpty() && token.length() >= MIN_FUZZY_LENGTH) {
+            int maxEdits = token.length() >= 8 ? 2 : 1;
+            String first = token.substring(0, 1);
+            int count = 0;
+            for (Map.Entry<String, Posting> entry : index.postings.subMap(first, true, first + Character.MAX_VALUE, false).entrySet()) {
+                String term = entry.getKey();
+                if (Math.abs(term.length() - token.length()) > maxEdits) {
+                    continue;
+                }
+                if (withinEditDistance(token, term, maxEdits)) {
+                    expansions.add(new Expansion(entry.getValue(), FUZZY_WEIGHT, idf(index, entry.getValue())));
+                    if (++count == MAX_FUZZY_EXPANSIONS) {
+                        break;
+                    }
+                }
+            }
+        }
+        return expansions;
+    }
+
+    private static float idf(IndexData index, Posting posting) {
+        return (float) Math.log(1 + (index.docCount - posting.size + 0.5) / (posting.size + 0.5));
+    }
+
+    // Levenshtein có chặn: dừng sớm khi cả hàng đều vượt quá maxEdits
+    private static boolean withinEditDistance(String a, String b, int maxEdits) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxEdits) {
+                return false;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()] <= maxEdits;
+    }
+
+    private static Map<String, Integer> analyzeProduct(Products product) {
+        Map<String, Integer> terms = new HashMap<>();
+        addTerms(terms, product.getProduct_name(), NAME_WEIGHT);
+        addTerms(terms, product.getSize(), SIZE_WEIGHT);
+        addTerms(terms, product.getDescription(), DESCRIPTION_WEIGHT);
+        return terms;
+    }
+
+    private static Map<String, Integer> analyzeCategory(String categoryName) {
+        Map<String, Integer> terms = new HashMap<>();
+        addTerms(terms, categoryName, CATEGORY_WEIGHT);
+        return terms;
+    }
+
+    private static void addTerms(Map<String, Integer> terms, String text, int weight) {
+        for (String token : SearchTokenizer.tokenize(text)) {
+            terms.merge(token, weight, Integer::sum);
+        }
+    }
+
+    private static final class Expansion {
+        private final Posting posting;
+        private final float weight;
+        private final float idf;
+
+        private Expansion(Posting posting, float weight, float idf) {
+            this.posting = posting;
+            this.weight = weight;
+            this.idf = idf;
+        }
+    }
+
+    // Danh sách (ordinal sản phẩm, tần suất) của 1 từ, lưu bằng mảng int để duyệt nhanh
+    private static final class Posting {
+        private int[] ordinals = new int[2];
+        private int[] freqs = new int[2];
+        private int size;
+
+        private void add(int ordinal, int freq) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            ordinals[size] = ordinal;
+            freqs[size] = freq;
+            size++;
+        }
+
+        private void remove(int ordinal) {
+            for (int i = 0; i < size; i++) {
+                if (ordinals[i] == ordinal) {
+                    size--;
+                    ordinals[i] = ordinals[size];
+                    freqs[i] = freqs[size];
+                    return;
+                }
+            }
+        }
+    }
+
+    private static final class Doc {
+        private final int productId;
+        private final int categoryId;
+        private final Map<String, Integer> productTerms;
+        private final Map<String, Integer> terms;
+        private final int length;
+
+        private Doc(int productId, int categoryId, Map<String, Integer> productTerms, Map<String, Integer> terms, int length) {
+            this.productId = productId;
+            this.categoryId = categoryId;
+            this.productTerms = productTerms;
+            this.terms = terms;
+            this.length = length;
+        }
+    }
+
+    private static final class IndexData {
+        private final TreeMap<String, Posting> postings = new TreeMap<>(); // sắp xếp để tra theo tiền tố
+        private final Map<Integer, Integer> ordinalByProductId = new HashMap<>();
+        private final List<Doc> docs = new ArrayList<>(); // vị trí = ordinal, null nếu slot đã trống
+        private final ArrayDeque<Integer> freeOrdinals = new ArrayDeque<>();
+        private int[] lengths = new int[16]; // độ dài theo ordinal, tách riêng để vòng tính điểm không phải đọc Doc
+        private int docCount;
+        private long totalLength;
+
+        private void add(int productId, int categoryId, Map<String, Integer> productTerms, Map<String, Integer> categoryTerms) {
+            Map<String, Integer> terms = new HashMap<>(productTerms);
+            categoryTerms.forEach((term, freq) -> terms.merge(term, freq, Integer::sum));
+            int length = 0;
+            for (int freq : terms.values()) {
+                length += freq;
+            }
+            Integer free = freeOrdinals.poll();
+            int ordinal = free != null ? free : docs.size();
+            Doc doc = new Doc(productId, categoryId, productTerms, terms, Math.max(length, 1));
+            if (free != null) {
+                docs.set(ordinal, doc);
+            } else {
+                docs.add(doc);
+                if (ordinal == lengths.length) {
+                    lengths = Arrays.copyOf(lengths, ordinal * 2);
+                }
+            }
+            lengths[ordinal] = doc.length;
+            ordinalByProductId.put(productId, ordinal);
+            terms.forEach((term, freq) -> postings.computeIfAbsent(term, key -> new Posting()).add(ordinal, freq));
+            docCount++;
+            totalLength += doc.length;
+        }
+
+        private void remove(int productId) {
+            Integer ordinal = ordinalByProductId.remove(productId);
+            if (ordinal == null) {
+                return;
+            }
+            Doc doc = docs.get(ordinal);
+            for (String term : doc.terms.keySet()) {
+                Posting posting = postings.get(term);
+                posting.remove(ordinal);
+                if (posting.size == 0) {
+                    postings.remove(term);
+                }
+            }
+            docs.set(ordinal, null);
+            freeOrdinals.push(ordinal);
+            docCount--;
+            totalLength -= doc.length;
+        }
+
+        private void replaceCategoryTerms(int categoryId, Map<String, Integer> categoryTerms) {
+            List<Doc> affected = new ArrayList<>();
+            for (Doc doc : docs) {
+                if (doc != null && doc.categoryId == categoryId) {
+                    affected.add(doc);
+                }
+            }
+            for (Doc doc : affected) {
+                remove(doc.productId);
+                add(doc.productId, doc.categoryId, doc.productTerms, categoryTerms);
+            }
+        }
+    }
+}
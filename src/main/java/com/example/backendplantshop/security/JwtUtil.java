@@ -2,6 +2,7 @@ package com.example.backendplantshop.security;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -9,6 +10,7 @@ import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 
 @Component
@@ -23,9 +25,21 @@ public class JwtUtil {
     @Value("${jwt.refresh-expiration}")
     private long refreshTokenExpiration;
 
-    // HS256 phải trên 32 ký tự
+    // key và parser không đổi trong suốt vòng đời ứng dụng nên chỉ dựng 1 lần (JwtParser thread-safe)
+    private Key signingKey;
+    private JwtParser jwtParser;
+
+    @PostConstruct
+    void init() {
+        // HS256 phải trên 32 ký tự
+        signingKey = Keys.hmacShaKeyFor(secretKey.getBytes());
+        jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey) //chỉ định để kiểm tra chữ ký
+                .build();
+    }
+
     private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(secretKey.getBytes());
+        return signingKey;
     }
 
 
@@ -52,6 +66,7 @@ public class JwtUtil {
         claims.put("type", "refresh");
         return Jwts.builder()
                 .setClaims(claims)
+                .setId(UUID.randomUUID().toString()) // jti ngẫu nhiên: 2 lần đăng nhập trong cùng 1 giây vẫn ra token (và hash) khác nhau
                 .setSubject(String.valueOf(user_id))
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() +refreshTokenExpiration))
@@ -61,14 +76,46 @@ public class JwtUtil {
 
     // Lấy tất cả claims từ token của client
     private Claims extractAllClaims(String token) {
-        //tạo JwtParserBuilder để giải mã và xác minh JWT
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey()) //chỉ định để kiểm tra chữ ký
-                .build() //Xây dựng JwtParser từ builder.
+        return jwtParser
                 .parseClaimsJws(token)//Giải mã và phân tích chuỗi token , ktr hạn
                 .getBody(); //lấy ra phần payload
     }
 
+    // Giải mã + kiểm tra chữ ký/hạn đúng 1 lần, trả về claims đã xác minh hoặc null nếu token không hợp lệ.
+    // Filter dùng kết quả này cho các hàm isAccessToken/extractUserId/extractRole(Claims) bên dưới
+    public Claims parseClaims(String token) {
+        try {
+            return extractAllClaims(token);
+        } catch (ExpiredJwtException e) {
+            System.out.println("Token expired!");
+        } catch (UnsupportedJwtException e) {
+            System.out.println("Unsupported JWT!");
+        } catch (MalformedJwtException e) {
+            System.out.println("Malformed JWT!");
+        } catch (SignatureException e) {
+            System.out.println("Invalid signature!");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Token is null or empty!");
+        }
+        return null;
+    }
+
+    public boolean isAccessToken(Claims claims) {
+        return "access".equals(claims.get("type", String.class));
+    }
+
+    public boolean isRefreshToken(Claims claims) {
+        return "refresh".equals(claims.get("type", String.class));
+    }
+
+    public int extractUserId(Claims claims) {
+        return Integer.parseInt(claims.getSubject());
+    }
+
+    public String extractRole(Claims claims) {
+        return claims.get("role", String.class);
+    }
+
     // Lấy username từ token
     public int extractUserId(String token) {
         return Integer.parseInt(extractAllClaims(token).getSubject());
@@ -82,35 +129,13 @@ public class JwtUtil {
 
     // Kiểm tra token có hợp lệ không
     public boolean validateToken(String token) {
-        try {
-            Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
-        }catch (ExpiredJwtException e) {
-            System.out.println("Token expired!");
-            return false;
-        } catch (UnsupportedJwtException e) {
-            System.out.println("Unsupported JWT!");
-            return false;
-        } catch (MalformedJwtException e) {
-            System.out.println("Malformed JWT!");
-            return false;
-        } catch (SignatureException e) {
-            System.out.println("Invalid signature!");
-            return false;
-        } catch (IllegalArgumentException e) {
-            System.out.println("Token is null or empty!");
-            return false;
-        }
+        return parseClaims(token) != null;
     }
 
 //    // Kiểm tra token có phải access token không
     public boolean isAccessToken(String token) {
         try {
-            Claims claims = extractAllClaims(token);
-            return "access".equals(claims.get("type", String.class)); //so sánh chuỗi
+            return isAccessToken(extractAllClaims(token)); //so sánh chuỗi
         } catch (Exception e) {
             return false;
         }
@@ -119,8 +144,7 @@ public class JwtUtil {
     // Kiểm tra token có phải refresh token không
     public boolean isRefreshToken(String token) {
         try {
-            Claims claims = extractAllClaims(token);
-            return "refresh".equals(claims.get("type", String.class));
+            return isRefreshToken(extractAllClaims(token));
         } catch (Exception e) {
             return false;
         }
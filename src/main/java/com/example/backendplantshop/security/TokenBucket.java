@@ -0,0 +1,36 @@
+package com.example.backendplantshop.security;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Token bucket không khóa: chứa tối đa capacity token, cứ mỗi refillIntervalNanos hồi 1 token.
+// Thay vì lưu (số token, lần hồi cuối) thì chỉ lưu 1 mốc thời gian "bucket đầy lại lúc nào" (kiểu GCRA)
+// nên mỗi lần lấy token chỉ là 1 phép CAS trên AtomicLong.
+public class TokenBucket {
+    private final long refillIntervalNanos;
+    private final long burstNanos;
+    private final AtomicLong fullAt;
+
+    public TokenBucket(int capacity, long refillIntervalNanos, long nowNanos) {
+        this.refillIntervalNanos = refillIntervalNanos;
+        this.burstNanos = refillIntervalNanos * capacity;
+        this.fullAt = new AtomicLong(nowNanos);
+    }
+
+    public boolean tryAcquire(long nowNanos) {
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, nowNanos) + refillIntervalNanos;
+            if (next - nowNanos > burstNanos) {
+                return false; // hết token
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    // số nano giây tới khi có lại 1 token (dùng cho header Retry-After)
+    public long nanosUntilNextToken(long nowNanos) {
+        return Math.max(0, fullAt.get() + refillIntervalNanos - burstNanos - nowNanos);
+    }
+}
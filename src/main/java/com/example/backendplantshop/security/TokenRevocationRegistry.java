@@ -0,0 +1,85 @@
+package com.example.backendplantshop.security;
+
+import com.example.backendplantshop.entity.UserTokenEpoch;
+import com.example.backendplantshop.mapper.UserTokenEpochMapper;
+import com.example.backendplantshop.util.TransactionUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Bảng "access token cấp trước mốc X của user này không còn hiệu lực" dùng cho logout/đổi mật khẩu tức thì.
+// Giữ trong bộ nhớ để JwtAuthenticationFilter kiểm tra O(1), ghi xuống bảng user_token_epochs,
+// nạp lại khi khởi động và đồng bộ định kỳ để nhận thu hồi từ các instance khác.
+@Slf4j
+@Component
+public class TokenRevocationRegistry {
+    // bù lệch đồng hồ giữa các instance khi đồng bộ theo revoked_before
+    private static final long CLOCK_SKEW_SECONDS = 5;
+
+    private final UserTokenEpochMapper userTokenEpochMapper;
+    private final long accessTokenTtlSeconds;
+    private final Map<Integer, Long> revokedBefore = new ConcurrentHashMap<>();
+    private volatile long lastSyncSeconds;
+
+    public TokenRevocationRegistry(UserTokenEpochMapper userTokenEpochMapper,
+                                   @Value("${jwt.access-expiration}") long accessTokenExpiration) {
+        this.userTokenEpochMapper = userTokenEpochMapper;
+        this.accessTokenTtlSeconds = accessTokenExpiration / 1000;
+    }
+
+    @PostConstruct
+    void load() {
+        long now = nowSeconds();
+        // mốc cũ hơn thời hạn access token thì mọi token cấp trước đó đều đã hết hạn, không cần nạp
+        merge(userTokenEpochMapper.findRevokedSince(now - accessTokenTtlSeconds));
+        lastSyncSeconds = now;
+        log.info("Đã nạp {} mốc thu hồi token", revokedBefore.size());
+    }
+
+    // Thu hồi mọi access token của user cấp trước thời điểm hiện tại.
+    // Độ chính xác theo giây (iat của JWT), token cấp trong cùng giây vẫn được chấp nhận.
+    // Bộ nhớ chỉ cập nhật sau khi commit: logout/đổi mật khẩu rollback thì token của user vẫn dùng được
+    public void revokeAll(int userId) {
+        long epoch = nowSeconds();
+        userTokenEpochMapper.upsert(userId, epoch);
+        TransactionUtil.runAfterCommit(() -> revokedBefore.merge(userId, epoch, Math::max));
+    }
+
+    public boolean isRevoked(int userId, Date issuedAt) {
+        Long epoch = revokedBefore.get(userId);
+        if (epoch == null) {
+            return false;
+        }
+        return issuedAt == null || issuedAt.getTime() / 1000 < epoch;
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation-sync-ms:10000}")
+    public void sync() {
+        long now = nowSeconds();
+        try {
+            merge(userTokenEpochMapper.findRevokedSince(lastSyncSeconds - CLOCK_SKEW_SECONDS));
+            lastSyncSeconds = now;
+        } catch (RuntimeException e) {
+            log.error("Không đồng bộ được mốc thu hồi token", e);
+        }
+        long expiredBefore = now - accessTokenTtlSeconds;
+        revokedBefore.values().removeIf(epoch -> epoch < expiredBefore);
+    }
+
+    private void merge(List<UserTokenEpoch> epochs) {
+        for (UserTokenEpoch epoch : epochs) {
+            revokedBefore.merge(epoch.getUser_id(), epoch.getRevoked_before(), Math::max);
+        }
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+}
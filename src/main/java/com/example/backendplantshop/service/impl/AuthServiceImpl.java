@@ -1,5 +1,6 @@
 package com.example.backendplantshop.service.impl;
 
+import com.example.backendplantshop.cache.UserPrincipalCache;
 import com.example.backendplantshop.convert.UserConvert;
 import com.example.backendplantshop.dto.request.users.ChangePasswordDtoRequest;
 import com.example.backendplantshop.dto.request.users.GoogleLoginDtoRequest;
@@ -11,37 +12,52 @@ import com.example.backendplantshop.dto.request.users.VerifyOtpDtoRequest;
 import com.example.backendplantshop.dto.request.users.ForgotPasswordDtoRequest;
 import com.example.backendplantshop.dto.response.user.LoginDtoResponse;
 import com.example.backendplantshop.dto.response.user.RegisterDtoResponse;
+import com.example.backendplantshop.entity.UserIdentity;
 import com.example.backendplantshop.entity.UserTokens;
 import com.example.backendplantshop.entity.Users;
 import com.example.backendplantshop.enums.ErrorCode;
 import com.example.backendplantshop.exception.AppException;
+import com.example.backendplantshop.mapper.UserIdentityMapper;
 import com.example.backendplantshop.mapper.UserMapper;
 import com.example.backendplantshop.security.JwtUtil;
+import com.example.backendplantshop.security.TokenRevocationRegistry;
 import com.example.backendplantshop.service.impl.GoogleAuthService;
 import com.example.backendplantshop.service.intf.AuthenticationService;
 import com.example.backendplantshop.service.intf.UserTokenService;
 import com.example.backendplantshop.service.intf.OtpService;
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AuthServiceImpl implements AuthenticationService {
+    private static final String GOOGLE_PROVIDER = "google";
+
     private final UserMapper userMapper;
+    private final UserIdentityMapper userIdentityMapper;
     private final PasswordEncoder passwordEncoder;
     private final JwtUtil jwtUtil;
     private final UserTokenService userTokenService;
     private final GoogleAuthService googleAuthService;
     private final OtpService otpService;
+    private final UserPrincipalCache userPrincipalCache;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
+    private final TransactionTemplate transactionTemplate;
 
     public String clean(String input) {
         return (input != null && !input.trim().isEmpty()) ? input : null;
@@ -93,11 +109,6 @@ public class AuthServiceImpl implements AuthenticationService {
         if (registerDtoRequest.getOtpCode() == null || registerDtoRequest.getOtpCode().trim().isEmpty()) {
             throw new AppException(ErrorCode.MISSING_REQUIRED_FIELD);
         }
-        
-        boolean isOtpValid = otpService.verifyOtp(registerDtoRequest.getEmail(), registerDtoRequest.getOtpCode());
-        if (!isOtpValid) {
-            throw new AppException(ErrorCode.INVALID_OTP);
-        }
 
         // Kiểm tra email
         Users existingUserByEmail = userMapper.findByEmailIgnoreDeleted(registerDtoRequest.getEmail());
@@ -116,15 +127,21 @@ public class AuthServiceImpl implements AuthenticationService {
             throw new AppException(ErrorCode.USERNAME_ALREADY_EXISTS);
         }
 
-        Users users = UserConvert.convertResigterDtoRequestToUsers(registerDtoRequest, passwordEncoder);
-        userMapper.insert(users);
+        // Mã hóa mật khẩu (BCrypt, có thể phải chờ pool) trước khi mở transaction để không giữ connection
+        // và khóa dòng user_otp trong lúc chờ
+        Users users = UserConvert.convertResigterDtoRequestToUsers(registerDtoRequest,
+                passwordEncoder.encode(registerDtoRequest.getPassword()));
 
-        // Đánh dấu OTP đã sử dụng và cập nhật user_id sau khi đăng ký thành công
-        try {
-            otpService.markOtpAsUsed(registerDtoRequest.getEmail(), registerDtoRequest.getOtpCode());
+        // Dùng OTP (đánh dấu đã dùng) và tạo user trong 1 transaction ngắn: 2 request cùng mã thì chỉ 1 bên qua được,
+        // insert lỗi thì rollback cả việc đánh dấu
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!otpService.consumeOtp(registerDtoRequest.getEmail(), registerDtoRequest.getOtpCode())) {
+                throw new AppException(ErrorCode.INVALID_OTP);
+            }
+            userMapper.insert(users);
+            // Cập nhật user_id cho OTP sau khi đăng ký thành công
             otpService.updateUserIdForOtp(registerDtoRequest.getEmail(), registerDtoRequest.getOtpCode(), users.getUser_id());
-        } catch (Exception e) {
-        }
+        });
         // Trả về thông tin user đã đăng ký
         return UserConvert.convertUsersToRegisterDtoResponse(users);
     }
@@ -196,8 +213,8 @@ public class AuthServiceImpl implements AuthenticationService {
             throw new AppException(ErrorCode.USER_NOT_EXISTS);
         }
 
-        // Kiểm tra password
-        if (!passwordEncoder.matches(loginDtoRequest.getPassword(), users.getPassword())) {
+        // Kiểm tra password (user tạo từ Google không có mật khẩu -> từ chối luôn, không cần băm)
+        if (users.getPassword() == null || !passwordEncoder.matches(loginDtoRequest.getPassword(), users.getPassword())) {
             throw new AppException(ErrorCode.INVALID_CREDENTIALS);
         }
 
@@ -234,13 +251,14 @@ public class AuthServiceImpl implements AuthenticationService {
             throw new AppException(ErrorCode.TOKEN_NOT_EXISTS);
         }
 
-        // Validate refresh token: phải hợp lệ và phải là refresh token
-        if (!jwtUtil.validateToken(token)) {
+        // Validate refresh token: phải hợp lệ và phải là refresh token (chỉ giải mã 1 lần)
+        Claims claims = jwtUtil.parseClaims(token);
+        if (claims == null) {
             log.warn("Refresh token không hợp lệ hoặc đã hết hạn");
             throw new AppException(ErrorCode.TOKEN_HAS_EXPIRED);
         }
 
-        if (!jwtUtil.isRefreshToken(token)) {
+        if (!jwtUtil.isRefreshToken(claims)) {
             log.warn("Token không phải là refresh token");
             throw new AppException(ErrorCode.AUTHENTICATION_ERROR);
         }
@@ -249,16 +267,16 @@ public class AuthServiceImpl implements AuthenticationService {
         int id;
         String role;
         try {
-            id = jwtUtil.extractUserId(token);
-            role = jwtUtil.extractRole(token);
+            id = jwtUtil.extractUserId(claims);
+            role = jwtUtil.extractRole(claims);
         } catch (Exception e) {
             log.error("Lỗi khi extract thông tin từ refresh token: {}", e.getMessage(), e);
             throw new AppException(ErrorCode.AUTHENTICATION_ERROR);
         }
 
-        // Lấy token cũ từ DB (chưa revoke)
-        UserTokens existing = userTokenService.findTokenByUser(id);
-        if (existing == null) {
+        // Tìm đúng phiên của refresh token này theo SHA-256 (1 lần tra unique index)
+        UserTokens existing = userTokenService.findByRefreshToken(token);
+        if (existing == null || existing.getUser_id() != id) {
             log.warn("Không tìm thấy refresh token trong DB cho user ID: {}", id);
             throw new AppException(ErrorCode.TOKEN_NOT_EXISTS);
         }
@@ -268,19 +286,13 @@ public class AuthServiceImpl implements AuthenticationService {
             throw new AppException(ErrorCode.TOKEN_REVOKED);
         }
 
-        // Kiểm tra token trong DB đã hết hạn chưa
+        // Kiểm tra token trong DB đã hết hạn chưa, chỉ thu hồi phiên này
         if (existing.getExpires_at() != null && existing.getExpires_at().isBefore(LocalDateTime.now())) {
             log.warn("Refresh token trong DB đã hết hạn cho user ID: {}", id);
-            userTokenService.revokeTokensByUser(id);
+            userTokenService.revokeToken(existing.getToken_id());
             throw new AppException(ErrorCode.TOKEN_HAS_EXPIRED);
         }
 
-        // Kiểm tra token từ header có khớp với token trong DB không
-        if (!token.equals(existing.getToken())) {
-            log.warn("Refresh token không khớp với token trong DB cho user ID: {}", id);
-            throw new AppException(ErrorCode.AUTHENTICATION_ERROR);
-        }
-
         // Nếu refresh token chưa hết hạn thì tạo access token mới và trả về lại refresh token cũ
         String newAccessToken = jwtUtil.generateAccessToken(id, role);
         log.info("Đã làm mới access token cho user ID: {}", id);
@@ -289,7 +301,7 @@ public class AuthServiceImpl implements AuthenticationService {
 //                .refreshToken(existing.getToken())
 //                .build();
 
-        return UserConvert.fromTokens(newAccessToken, existing);
+        return UserConvert.toLoginDtoResponse(newAccessToken, token);
     }
 
 
@@ -312,8 +324,8 @@ public class AuthServiceImpl implements AuthenticationService {
             throw new AppException(ErrorCode.USER_NOT_EXISTS);
         }
 
-        //check old pass
-        if(!passwordEncoder.matches(changePasswordDtoRequest.getOldPassword(), user.getPassword())) {
+        //check old pass (user Google chưa có mật khẩu thì đặt qua quên mật khẩu bằng OTP)
+        if(user.getPassword() == null || !passwordEncoder.matches(changePasswordDtoRequest.getOldPassword(), user.getPassword())) {
             throw new AppException(ErrorCode.INVALID_CREDENTIALS);
         }
 
@@ -325,6 +337,8 @@ public class AuthServiceImpl implements AuthenticationService {
 
         // Thu hồi tất cả các token của user sau khi đổi mật khẩu
         userTokenService.revokeTokensByUser(currentUserId);
+        tokenRevocationRegistry.revokeAll(currentUserId);
+        userPrincipalCache.evict(currentUserId);
         log.info("User ID: {} đã đổi mật khẩu thành công và tất cả token đã bị thu hồi", currentUserId);
     }
 
@@ -365,26 +379,18 @@ public class AuthServiceImpl implements AuthenticationService {
             throw new AppException(ErrorCode.USER_NOT_EXISTS);
         }
 
-        // Xác thực OTP
-        boolean isOtpValid = otpService.verifyOtp(email, request.getOtpCode());
-        if (!isOtpValid) {
-            log.warn("OTP không hợp lệ cho email: {} với OTP: {}", email, request.getOtpCode());
-            throw new AppException(ErrorCode.INVALID_OTP);
-        }
-        
-        log.info("OTP đã được verify thành công cho email: {}, đang tiến hành reset password", email);
+        // Mã hóa trước khi mở transaction (xem register)
+        String encodedNewPassword = passwordEncoder.encode(request.getNewPassword());
 
-        // Cập nhật mật khẩu
-        updateUserPassword(user.getUser_id(), request.getNewPassword());
-        
-        // Đánh dấu OTP đã sử dụng sau khi reset password thành công
-        try {
-            otpService.markOtpAsUsed(email, request.getOtpCode());
-            log.info("Đã mark OTP đã sử dụng cho email: {}", email);
-        } catch (Exception e) {
-            log.warn("Không thể mark OTP cho email {}: {}", email, e.getMessage());
-            // Không throw exception vì password đã được reset thành công
-        }
+        // Xác thực và đánh dấu OTP đã sử dụng rồi đổi mật khẩu trong cùng 1 transaction ngắn (chỉ 1 request dùng được mã)
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!otpService.consumeOtp(email, request.getOtpCode())) {
+                log.warn("OTP không hợp lệ hoặc đã được sử dụng cho email: {}", email);
+                throw new AppException(ErrorCode.INVALID_OTP);
+            }
+            log.info("OTP đã được xác thực cho email: {}, đang tiến hành reset password", email);
+            applyEncodedPassword(user.getUser_id(), encodedNewPassword);
+        });
         
         log.info("User ID: {} đã reset mật khẩu bằng OTP thành công", user.getUser_id());
     }
@@ -421,12 +427,17 @@ public class AuthServiceImpl implements AuthenticationService {
 
     private void updateUserPassword(int userId, String newPassword) {
         // Mã hóa mật khẩu mới và cập nhật
-        String encodedNewPassword = passwordEncoder.encode(newPassword);
+        applyEncodedPassword(userId, passwordEncoder.encode(newPassword));
+    }
+
+    private void applyEncodedPassword(int userId, String encodedNewPassword) {
         int rows = userMapper.changePassword(userId, encodedNewPassword);
         if (rows == 0) {
             throw new AppException(ErrorCode.CHANGEPASSWORD_FAILED);
         }
         userTokenService.revokeTokensByUser(userId);
+        tokenRevocationRegistry.revokeAll(userId);
+        userPrincipalCache.evict(userId);
     }
 
 
@@ -453,6 +464,8 @@ public class AuthServiceImpl implements AuthenticationService {
         if(jwtUtil.isAccessToken(token)) {
             int id = jwtUtil.extractUserId(token);
             userTokenService.revokeTokensByUser(id);
+            // access token hiện tại cũng hết hiệu lực ngay, không đợi tới lúc hết hạn
+            tokenRevocationRegistry.revokeAll(id);
         }
         else {
             throw new AppException(ErrorCode.AUTHENTICATION_ERROR);
@@ -479,35 +492,21 @@ public class AuthServiceImpl implements AuthenticationService {
                 codePreview, 
                 googleLoginDtoRequest.getRedirectUri());
             
-            // Exchange code → access token
+            // Exchange code → access token → thông tin user
             // Truyền redirectUri từ request, nếu không có thì service sẽ dùng từ config
-            String accessToken;
+            // code gửi lặp (double submit) dùng lại kết quả của lần đổi đầu tiên, không gọi Google lần 2
+            Map<String, String> googleUserInfo;
             try {
-                accessToken = googleAuthService.exchangeCodeForAccessToken(
-                    googleLoginDtoRequest.getCode(), 
+                googleUserInfo = googleAuthService.getUserInfoByCode(
+                    googleLoginDtoRequest.getCode(),
                     googleLoginDtoRequest.getRedirectUri()
                 );
             } catch (Exception e) {
-                log.error("Lỗi khi exchange code với Google: {}", e.getMessage());
-                throw new AppException(ErrorCode.AUTHENTICATION_ERROR);
-            }
-            
-            if (accessToken == null || accessToken.trim().isEmpty()) {
-                log.error("Access token từ Google là null hoặc rỗng");
+                log.error("Lỗi khi đăng nhập với Google: {}", e.getMessage());
                 throw new AppException(ErrorCode.AUTHENTICATION_ERROR);
             }
-            
-            log.info("Đã lấy được access token từ Google thành công");
 
-            // Lấy thông tin user từ Google
-            Map<String, String> googleUserInfo;
-            try {
-                googleUserInfo = googleAuthService.getUserInfoFromGoogle(accessToken);
-            } catch (Exception e) {
-                log.error("Lỗi khi lấy thông tin user từ Google: {}", e.getMessage(), e);
-                throw new AppException(ErrorCode.AUTHENTICATION_ERROR);
-            }
-            
+            String googleId = googleAuthService.getGoogleId(googleUserInfo);
             String email = googleAuthService.getEmail(googleUserInfo);
             String name = googleAuthService.getName(googleUserInfo);
             
@@ -518,106 +517,54 @@ public class AuthServiceImpl implements AuthenticationService {
                 throw new AppException(ErrorCode.AUTHENTICATION_ERROR);
             }
 
-            //Kiểm tra user đã tồn tại chưa (tìm theo email)
-            log.info("Bắt đầu kiểm tra user theo email (không quan tâm is_deleted): {}", email);
-            Users existingUser = null;
-            try {
-                existingUser = userMapper.findByEmailIgnoreDeleted(email);
-                log.info("Kết quả findByEmailIgnoreDeleted: {}", existingUser != null ? "found" : "not found");
-            } catch (Exception e) {
-                log.error("Lỗi khi tìm user theo email (ignore deleted): {}", e.getMessage(), e);
-                throw new AppException(ErrorCode.AUTHENTICATION_ERROR);
-            }
-            
-            // Kiểm tra nếu user đã tồn tại
-            if (existingUser != null) {
-                // Kiểm tra xem user có bị xóa mềm không (is_deleted = 1)
-                if (existingUser.getIs_deleted() != null && existingUser.getIs_deleted()) {
-                    log.warn("User đã tồn tại nhưng bị vô hiệu hóa: email={}", email);
-                    throw new AppException(ErrorCode.ACCOUNT_DISABLED);
+            // Bước 1: đã từng đăng nhập Google -> tra thẳng theo (provider, subject), không phụ thuộc email
+            Users user = null;
+            if (googleId != null) {
+                UserIdentity identity = userIdentityMapper.findByProviderAndSubject(GOOGLE_PROVIDER, googleId);
+                if (identity != null) {
+                    user = userMapper.findById(identity.getUser_id()); // findById đã lọc is_deleted = 0
+                    if (user == null) {
+                        log.warn("Tài khoản liên kết Google đã bị vô hiệu hóa: user_id={}", identity.getUser_id());
+                        throw new AppException(ErrorCode.ACCOUNT_DISABLED);
+                    }
+                    log.info("Đăng nhập Google bằng tài khoản đã liên kết: user_id={}", user.getUser_id());
                 }
-                
-                // User tồn tại và chưa bị xóa, sử dụng user này
-                log.info("User đã tồn tại và chưa bị xóa: email={}", email);
-                Users user = existingUser;
-                
-                // Tạo JWT tokens
-                String jwtAccessToken = jwtUtil.generateAccessToken(user.getUser_id(), user.getRole());
-                String jwtRefreshToken = jwtUtil.generateRefreshToken(user.getUser_id(), user.getRole());
-
-                // Lưu refresh token vào DB
-//                userTokenService.saveToken(UserTokens.builder()
-//                        .user_id(user.getUser_id())
-//                        .token(jwtRefreshToken)
-//                        .expires_at(LocalDateTime.now().plusDays(7))
-//                        .revoked(false)
-//                        .build());
-//
-//                return LoginDtoResponse.builder()
-//                        .accessToken(jwtAccessToken)
-//                        .refreshToken(jwtRefreshToken)
-//                        .build();
-                userTokenService.saveToken(UserConvert.toUserToken(user, jwtRefreshToken));
-
-                return UserConvert.toLoginDtoResponse(jwtAccessToken,jwtRefreshToken);
-
-
             }
 
-            // Bước 4: Nếu user chưa tồn tại, tạo mới
-            log.info("User chưa tồn tại, bắt đầu tạo user mới: email={}", email);
-            
-            // Tạo username từ name hoặc email nếu name không có
-            String username = (name != null && !name.trim().isEmpty()) 
-                ? name.trim().replaceAll("\\s+", "") // Xóa khoảng trắng
-                : email.substring(0, email.indexOf("@")); // Dùng phần trước @ của email
-
-            // Đảm bảo username duy nhất
-            String baseUsername = username;
-            int counter = 1;
-            while (userMapper.findByUsername(username) != null) {
-                username = baseUsername + counter;
-                counter++;
-            }
-            log.info("Username được tạo: {}", username);
+            if (user == null) {
+                // Bước 2: chưa liên kết -> tìm theo email (tài khoản đăng ký thường hoặc user Google tạo trước khi có bảng user_identities)
+                log.info("Bắt đầu kiểm tra user theo email (không quan tâm is_deleted): {}", email);
+                Users existingUser = null;
+                try {
+                    existingUser = userMapper.findByEmailIgnoreDeleted(email);
+                    log.info("Kết quả findByEmailIgnoreDeleted: {}", existingUser != null ? "found" : "not found");
+                } catch (Exception e) {
+                    log.error("Lỗi khi tìm user theo email (ignore deleted): {}", e.getMessage(), e);
+                    throw new AppException(ErrorCode.AUTHENTICATION_ERROR);
+                }
 
-            // Tạo user mới với password ngẫu nhiên (user Google không cần password)
-            String randomPassword = passwordEncoder.encode(java.util.UUID.randomUUID().toString());
-            Users user = Users.builder()
-                    .email(email)
-                    .password(randomPassword)
-                    .username(username)
-                    .role("USER")
-                    .is_deleted(false)
-                    .build();
+                if (existingUser != null) {
+                    // Kiểm tra xem user có bị xóa mềm không (is_deleted = 1)
+                    if (existingUser.getIs_deleted() != null && existingUser.getIs_deleted()) {
+                        log.warn("User đã tồn tại nhưng bị vô hiệu hóa: email={}", email);
+                        throw new AppException(ErrorCode.ACCOUNT_DISABLED);
+                    }
+                    log.info("User đã tồn tại và chưa bị xóa: email={}", email);
+                    user = existingUser;
+                } else {
+                    // Bước 3: Nếu user chưa tồn tại, tạo mới
+                    user = createGoogleUser(email, name);
+                }
 
-            log.info("Bắt đầu insert user mới vào database: email={}", email);
-            try {
-                userMapper.insert(user);
-                log.info("Đã tạo user mới từ Google thành công: {}", email);
-            } catch (Exception e) {
-                log.error("Lỗi khi insert user mới: {}", e.getMessage(), e);
-                log.error("SQL exception details: ", e);
-                throw new AppException(ErrorCode.AUTHENTICATION_ERROR);
+                if (googleId != null) {
+                    linkIdentity(user, googleId, email);
+                }
             }
 
-            // Bước 5: Tạo JWT tokens (giống login thường)
+            // Bước 4: Tạo JWT tokens (giống login thường)
             String jwtAccessToken = jwtUtil.generateAccessToken(user.getUser_id(), user.getRole());
             String jwtRefreshToken = jwtUtil.generateRefreshToken(user.getUser_id(), user.getRole());
 
-            // Lưu refresh token vào DB
-//            userTokenService.saveToken(UserTokens.builder()
-//                    .user_id(user.getUser_id())
-//                    .token(jwtRefreshToken)
-//                    .expires_at(LocalDateTime.now().plusDays(7))
-//                    .revoked(false)
-//                    .build());
-//
-//            return LoginDtoResponse.builder()
-//                    .accessToken(jwtAccessToken)
-//                    .refreshToken(jwtRefreshToken)
-//                    .build();
-
             userTokenService.saveToken(UserConvert.toUserToken(user, jwtRefreshToken));
 
             return UserConvert.toLoginDtoResponse(jwtAccessToken,jwtRefreshToken);
@@ -645,4 +592,63 @@ public class AuthServiceImpl implements AuthenticationService {
         }
     }
 
+    // User Google không có mật khẩu (password NULL): không cần băm BCrypt, đăng nhập bằng mật khẩu sẽ bị từ chối
+    private Users createGoogleUser(String email, String name) {
+        log.info("User chưa tồn tại, bắt đầu tạo user mới: email={}", email);
+
+        // Tạo username từ name hoặc email nếu name không có
+        String baseUsername = (name != null && !name.trim().isEmpty())
+            ? name.trim().replaceAll("\\s+", "") // Xóa khoảng trắng
+            : email.substring(0, email.indexOf("@")); // Dùng phần trước @ của email
+        String username = generateUniqueUsername(baseUsername);
+        log.info("Username được tạo: {}", username);
+
+        Users user = Users.builder()
+                .email(email)
+                .username(username)
+                .role("USER")
+                .is_deleted(false)
+                .build();
+
+        log.info("Bắt đầu insert user mới vào database: email={}", email);
+        try {
+            userMapper.insert(user);
+            log.info("Đã tạo user mới từ Google thành công: {}", email);
+        } catch (Exception e) {
+            log.error("Lỗi khi insert user mới: {}", e.getMessage(), e);
+            throw new AppException(ErrorCode.AUTHENTICATION_ERROR);
+        }
+        return user;
+    }
+
+    private void linkIdentity(Users user, String googleId, String email) {
+        try {
+            userIdentityMapper.insert(UserIdentity.builder()
+                    .user_id(user.getUser_id())
+                    .provider(GOOGLE_PROVIDER)
+                    .subject(googleId)
+                    .email(email)
+                    .build());
+        } catch (DuplicateKeyException e) {
+            // 2 request đăng nhập Google đầu tiên chạy song song: request kia đã liên kết rồi
+            log.info("Tài khoản Google {} đã được liên kết trước đó", googleId);
+        }
+    }
+
+    // 1 câu LIKE 'base%' lấy mọi username trùng tiền tố, rồi chọn base, base1, base2... còn trống ngay trong bộ nhớ
+    private String generateUniqueUsername(String baseUsername) {
+        String prefix = baseUsername.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        // so sánh không phân biệt hoa thường giống collation mặc định của MySQL
+        Set<String> taken = new HashSet<>();
+        for (String username : userMapper.findUsernamesByPrefix(prefix)) {
+            taken.add(username.toLowerCase(Locale.ROOT));
+        }
+        String candidate = baseUsername;
+        // có n tên bị trùng thì trong base1..base(n) chắc chắn còn ít nhất 1 tên trống
+        for (int counter = 1; taken.contains(candidate.toLowerCase(Locale.ROOT)); counter++) {
+            candidate = baseUsername + counter;
+        }
+        return candidate;
+    }
+
 }
@@ -1,5 +1,6 @@
 package com.example.backendplantshop.service.impl;
 
+import com.example.backendplantshop.cache.CategoryCatalogCache;
 import com.example.backendplantshop.convert.CategoryConvert;
 import com.example.backendplantshop.dto.request.CategoryDtoRequest;
 import com.example.backendplantshop.dto.response.CategoryDtoResponse;
@@ -7,6 +8,7 @@ import com.example.backendplantshop.entity.Category;
 import com.example.backendplantshop.enums.ErrorCode;
 import com.example.backendplantshop.exception.AppException;
 import com.example.backendplantshop.mapper.CategoryMapper;
+import com.example.backendplantshop.search.ProductSearchIndex;
 import com.example.backendplantshop.service.intf.CategoryService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -19,15 +21,22 @@ public class CategoryServiceImpl implements CategoryService {
 
     private final CategoryMapper categoryMapper;
     private final AuthServiceImpl authService;
+    private final CategoryCatalogCache categoryCatalogCache;
+    private final ProductSearchIndex productSearchIndex;
 
     public List<CategoryDtoResponse> getAllCategory(){
-        var category = CategoryConvert.convertListCategoryToListCategoryDtoResponse(categoryMapper.getAll());
+        var category = CategoryConvert.convertListCategoryToListCategoryDtoResponse(categoryCatalogCache.getAll());
         if(category.isEmpty()){
             throw new AppException(ErrorCode.LIST_NOT_FOUND);
         }
         return category;
     }
 
+    @Override
+    public String getCategoryETag() {
+        return categoryCatalogCache.catalogETag();
+    }
+
     public CategoryDtoResponse findById(int id){
         var category = categoryMapper.findById(id);
         if(category == null){
@@ -81,12 +90,14 @@ public class CategoryServiceImpl implements CategoryService {
             // Nếu category đã tồn tại nhưng đã bị xóa mềm 
             if (existingCategory.getIs_deleted()) {
                 categoryMapper.restoreCategory(existingCategory.getCategory_id());
+                categoryCatalogCache.evict();
                 return;
             }
         }
         
         // Nếu không tìm thấy category nào → tạo mới
         categoryMapper.insert(CategoryConvert.toCategory(categoryRequest));
+        categoryCatalogCache.evict();
     }
 
     public void update(int id, CategoryDtoRequest categoryRequest) {
@@ -107,6 +118,9 @@ public class CategoryServiceImpl implements CategoryService {
         
         // Nếu tên không thay đổi hoặc tên mới không trùng với category khác
         categoryMapper.update(CategoryConvert.toUpdatedCategory(id, categoryRequest, existingCategory));
+        categoryCatalogCache.evict();
+        // tên danh mục cũng là từ khóa tìm kiếm của sản phẩm
+        productSearchIndex.reindexCategory(id);
     }
 
     public void delete(int id){
@@ -122,6 +136,7 @@ public class CategoryServiceImpl implements CategoryService {
             throw new AppException(ErrorCode.CATEGORY_HAS_PRODUCTS);
         }
         categoryMapper.delete(id);
+        categoryCatalogCache.evict();
     }
 
     @Override
@@ -143,5 +158,6 @@ public class CategoryServiceImpl implements CategoryService {
             throw new AppException(ErrorCode.NOT_DELETE);
         }
         categoryMapper.restoreCategory(id);
+        categoryCatalogCache.evict();
     }
 }
@@ -1,8 +1,14 @@
 package com.example.backendplantshop.service.impl;
 
+import com.example.backendplantshop.util.TokenHashUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
@@ -11,8 +17,10 @@ import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
 
 @Service
 @Slf4j
@@ -27,13 +35,48 @@ public class GoogleAuthService {
     @Value("${google.oauth2.redirect-uri}")
     private String redirectUri;
 
+    @Value("${google.oauth2.token-uri:https://oauth2.googleapis.com/token}")
+    private String tokenUri;
+
+    @Value("${google.oauth2.user-info-uri:https://www.googleapis.com/oauth2/v2/userinfo}")
+    private String userInfoUri;
+
     private final Gson gson = new Gson();
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final RestTemplate restTemplate;
+    // kết quả đổi code theo SHA-256(code|redirectUri); code Google chỉ dùng được 1 lần và hết hạn sau vài phút
+    private final Cache<String, Map<String, String>> codeResults;
+
+    public GoogleAuthService(@Qualifier("googleRestTemplate") RestTemplate restTemplate, MeterRegistry meterRegistry) {
+        this.restTemplate = restTemplate;
+        this.codeResults = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(Duration.ofMinutes(2))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, codeResults, "google.oauth.code");
+    }
+
+    // Đổi code -> access token -> thông tin user. Cùng 1 code gửi lặp (double submit, retry của client) thì
+    // các request trùng chờ chung 1 lần gọi Google và dùng lại kết quả; lỗi thì không lưu để lần sau gọi lại
+    public Map<String, String> getUserInfoByCode(String code, String redirectUri) throws Exception {
+        String key = TokenHashUtil.sha256Hex(code + "|" + redirectUri);
+        try {
+            return codeResults.get(key, k -> {
+                try {
+                    return getUserInfoFromGoogle(exchangeCodeForAccessToken(code, redirectUri));
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            });
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
 
 
     public String exchangeCodeForAccessToken(String code, String redirectUri) throws Exception {
         try {
-            String tokenUrl = "https://oauth2.googleapis.com/token";
+            String tokenUrl = tokenUri;
             
             // Sử dụng redirectUri từ param, nếu null thì dùng từ config
             String finalRedirectUri = (redirectUri != null && !redirectUri.trim().isEmpty()) 
@@ -118,7 +161,7 @@ public class GoogleAuthService {
 //     Lấy thông tin user từ Google bằng access token
     public Map<String, String> getUserInfoFromGoogle(String accessToken) throws Exception {
         try {
-            String userInfoUrl = "https://www.googleapis.com/oauth2/v2/userinfo";
+            String userInfoUrl = userInfoUri;
             
             HttpHeaders headers = new HttpHeaders();
             headers.setBearerAuth(accessToken);
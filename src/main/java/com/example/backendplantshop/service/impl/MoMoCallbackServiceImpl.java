@@ -0,0 +1,121 @@
+package com.example.backendplantshop.service.impl;
+
+import com.example.backendplantshop.dto.request.momo.MoMoCallbackRequest;
+import com.example.backendplantshop.entity.MoMoCallback;
+import com.example.backendplantshop.enums.MoMoPaymentPurpose;
+import com.example.backendplantshop.mapper.MoMoCallbackMapper;
+import com.example.backendplantshop.service.intf.MoMoCallbackService;
+import com.example.backendplantshop.service.intf.OrderService;
+import com.example.backendplantshop.service.intf.PaymentService;
+import com.example.backendplantshop.util.TransactionUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+
+// MoMo gửi lại IPN tới khi nhận 200 (và đôi khi vẫn gửi lại sau đó), nên mỗi giao dịch
+// (partnerCode, orderId, transId) chỉ được áp dụng 1 lần:
+// - recentKeys: IPN vừa xử lý trên instance này -> trả lời ngay, không đụng DB
+// - bảng momo_callbacks: insert cùng transaction với cập nhật đơn hàng, trùng key thì bỏ qua (đúng cả khi nhiều instance)
+@Slf4j
+@Service
+public class MoMoCallbackServiceImpl implements MoMoCallbackService {
+    private final MoMoCallbackMapper momoCallbackMapper;
+    private final PaymentService paymentService;
+    private final OrderService orderService;
+    private final Cache<String, Boolean> recentKeys;
+    private final Counter processed;
+    private final Counter duplicateInMemory;
+    private final Counter duplicateInDb;
+
+    public MoMoCallbackServiceImpl(MoMoCallbackMapper momoCallbackMapper,
+                                   PaymentService paymentService,
+                                   OrderService orderService,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${momo.callback.recent-size:10000}") long recentSize) {
+        this.momoCallbackMapper = momoCallbackMapper;
+        this.paymentService = paymentService;
+        this.orderService = orderService;
+        // MoMo thường gửi lại trong vài phút đến vài giờ; quá hạn thì bảng momo_callbacks vẫn chặn được
+        this.recentKeys = Caffeine.newBuilder()
+                .maximumSize(recentSize)
+                .expireAfterWrite(Duration.ofHours(1))
+                .build();
+        this.processed = callbackCounter(meterRegistry, "processed", "none");
+        this.duplicateInMemory = callbackCounter(meterRegistry, "duplicate", "memory");
+        this.duplicateInDb = callbackCounter(meterRegistry, "duplicate", "db");
+    }
+
+    // /actuator/metrics/momo.callback?tag=result:duplicate
+    private static Counter callbackCounter(MeterRegistry meterRegistry, String result, String dedupedBy) {
+        return Counter.builder("momo.callback")
+                .description("Số IPN MoMo đã xử lý / bị bỏ qua vì trùng")
+                .tag("result", result)
+                .tag("deduped_by", dedupedBy)
+                .register(meterRegistry);
+    }
+
+    @Override
+    @Transactional
+    public boolean process(MoMoCallbackRequest callbackRequest) {
+        String key = callbackKey(callbackRequest);
+        if (recentKeys.getIfPresent(key) != null) {
+            duplicateInMemory.increment();
+            log.info("Bỏ qua IPN MoMo trùng (vừa xử lý): {}", key);
+            return false;
+        }
+
+        Integer orderId = paymentService.extractOrderIdFromMoMoOrderId(callbackRequest.getOrderId());
+        if (orderId == null) {
+            log.error("Không thể parse orderId từ giá trị: {}", callbackRequest.getOrderId());
+        }
+        MoMoPaymentPurpose purpose = MoMoPaymentPurpose.fromExtraData(callbackRequest.getExtraData());
+
+        int inserted = momoCallbackMapper.insertIfAbsent(MoMoCallback.builder()
+                .partner_code(callbackRequest.getPartnerCode())
+                .momo_order_id(callbackRequest.getOrderId())
+                .trans_id(transId(callbackRequest))
+                .order_id(orderId)
+                .purpose(purpose.name())
+                .result_code(callbackRequest.getResultCode())
+                .amount(callbackRequest.getAmount())
+                .build());
+        if (inserted == 0) {
+            duplicateInDb.increment();
+            recentKeys.put(key, Boolean.TRUE);
+            log.info("Bỏ qua IPN MoMo trùng (đã có trong momo_callbacks): {}", key);
+            return false;
+        }
+
+        // Xử lý kết quả thanh toán; lỗi thì rollback cả dòng momo_callbacks để lần thử lại (MoMoCallbackProcessor) xử lý tiếp
+        if (purpose == MoMoPaymentPurpose.DEPOSIT) {
+            paymentService.handleDepositCallback(orderId, callbackRequest);
+        } else {
+            orderService.handleOrderPaymentCallback(orderId, callbackRequest);
+        }
+        TransactionUtil.runAfterCommit(() -> {
+            recentKeys.put(key, Boolean.TRUE);
+            processed.increment();
+        });
+        return true;
+    }
+
+    @Override
+    public boolean isRecentlyProcessed(MoMoCallbackRequest callbackRequest) {
+        return recentKeys.getIfPresent(callbackKey(callbackRequest)) != null;
+    }
+
+    private static String callbackKey(MoMoCallbackRequest callbackRequest) {
+        return callbackRequest.getPartnerCode() + '|' + callbackRequest.getOrderId() + '|' + transId(callbackRequest);
+    }
+
+    private static long transId(MoMoCallbackRequest callbackRequest) {
+        return callbackRequest.getTransId() != null ? callbackRequest.getTransId() : 0L;
+    }
+}
@@ -1,22 +1,23 @@
 package com.example.backendplantshop.service.impl;
 
+import com.example.backendplantshop.client.MoMoGatewayClient;
 import com.example.backendplantshop.config.MoMoConfig;
 import com.example.backendplantshop.dto.request.momo.CreatePaymentRequest;
 import com.example.backendplantshop.dto.request.momo.MoMoPaymentRequest;
 import com.example.backendplantshop.dto.response.momo.CreatePaymentResponse;
 import com.example.backendplantshop.dto.response.momo.MoMoPaymentResponse;
+import com.example.backendplantshop.entity.MoMoPaymentAttempt;
 import com.example.backendplantshop.enums.ErrorCode;
 import com.example.backendplantshop.enums.MoMoPaymentPurpose;
 import com.example.backendplantshop.exception.AppException;
+import com.example.backendplantshop.mapper.MoMoPaymentAttemptMapper;
+import com.example.backendplantshop.payment.MoMoSigner;
 import com.example.backendplantshop.service.intf.MoMoService;
-import com.example.backendplantshop.util.MoMoUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.UUID;
 
@@ -27,7 +28,9 @@ public class MoMoServiceImpl implements MoMoService {
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
     private final MoMoConfig momoConfig;
-    private final RestTemplate restTemplate;
+    private final MoMoGatewayClient momoGatewayClient;
+    private final MoMoSigner momoSigner;
+    private final MoMoPaymentAttemptMapper momoPaymentAttemptMapper;
     
     @Override
     public CreatePaymentResponse createPayment(CreatePaymentRequest request) {
@@ -74,9 +77,8 @@ public class MoMoServiceImpl implements MoMoService {
             String extraData = "purpose=" + purpose.name();
             
             // Tạo raw hash (sử dụng momoOrderId cho MoMo API)
-            String rawHash = MoMoUtil.createRawHash(
-                    momoConfig.getAccessKey(),
-                    String.valueOf(amount),
+            String rawHash = momoSigner.createRawHash(
+                    amount,
                     extraData,
                     momoConfig.getNotifyUrl(),
                     momoOrderId, // Sử dụng momoOrderId thay vì orderId từ DB
@@ -88,11 +90,7 @@ public class MoMoServiceImpl implements MoMoService {
             );
             
             // Tạo signature
-            String signature = MoMoUtil.createSignature(
-                    momoConfig.getAccessKey(),
-                    momoConfig.getSecretKey(),
-                    rawHash
-            );
+            String signature = momoSigner.sign(rawHash);
             
             if (log.isDebugEnabled()) {
                 log.debug("MoMo raw hash trước khi ký: {}", rawHash);
@@ -125,10 +123,6 @@ public class MoMoServiceImpl implements MoMoService {
             }
             
             // Gọi MoMo API
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<MoMoPaymentRequest> entity = new HttpEntity<>(momoRequest, headers);
-            
             String apiEndpoint = momoConfig.getApiEndpoint();
             log.info("Gọi MoMo API với requestId: {}, momoOrderId: {}, orderId DB: {}, amount: {}, purpose: {}",
                     requestId, momoOrderId, request.getOrderId(), amount, purpose);
@@ -149,14 +143,8 @@ public class MoMoServiceImpl implements MoMoService {
             
 //            log.info("MoMo API Endpoint: {}", apiEndpoint);
             
-            ResponseEntity<MoMoPaymentResponse> response = restTemplate.exchange(
-                    apiEndpoint,
-                    HttpMethod.POST,
-                    entity,
-                    MoMoPaymentResponse.class
-            );
-            
-            MoMoPaymentResponse momoResponse = response.getBody();
+            // pool + timeout (kết nối 3s, phản hồi tối đa 30s) + cầu dao nằm trong MoMoGatewayClient
+            MoMoPaymentResponse momoResponse = momoGatewayClient.post("create", apiEndpoint, momoRequest, MoMoPaymentResponse.class);
             
             if (momoResponse == null) {
                 throw new AppException(ErrorCode.INTERNAL_SERVER_ERROR);
@@ -167,6 +155,8 @@ public class MoMoServiceImpl implements MoMoService {
                 throw new AppException(ErrorCode.INTERNAL_SERVER_ERROR);
             }
             
+            recordPaymentAttempt(momoOrderId, requestId, request.getOrderId(), purpose, amount);
+            
             // Tạo response - trả về đầy đủ thông tin để frontend lựa chọn
             // - deeplink: dùng cho mobile app (momo://)
             // - payUrl: dùng cho web browser
@@ -183,21 +173,34 @@ public class MoMoServiceImpl implements MoMoService {
                     .message("Tạo thanh toán thành công")
                     .build();
                     
+        } catch (AppException e) {
+            // giữ nguyên mã lỗi (vd: PAYMENT_GATEWAY_UNAVAILABLE khi MoMo đang lỗi) để client biết nên thử lại sau
+            throw e;
         } catch (Exception e) {
             log.error("Lỗi khi tạo payment với MoMo: {}", e.getMessage(), e);
             throw new AppException(ErrorCode.INTERNAL_SERVER_ERROR);
         }
     }
     
+    // lưu orderId đã gửi MoMo để job đối soát tra lại được khi mất IPN; lỗi thì chỉ ghi log, không chặn thanh toán
+    private void recordPaymentAttempt(String momoOrderId, String requestId, int orderId, MoMoPaymentPurpose purpose, long amount) {
+        try {
+            momoPaymentAttemptMapper.insert(MoMoPaymentAttempt.builder()
+                    .momo_order_id(momoOrderId)
+                    .request_id(requestId)
+                    .order_id(orderId)
+                    .purpose(purpose.name())
+                    .amount(amount)
+                    .build());
+        } catch (Exception e) {
+            log.error("Không lưu được MoMo request {} cho order {}: {}", momoOrderId, orderId, e.getMessage(), e);
+        }
+    }
+    
     @Override
     public boolean verifyCallback(String signature, String rawHash) {
         try {
-            String calculatedSignature = MoMoUtil.createSignature(
-                    momoConfig.getAccessKey(),
-                    momoConfig.getSecretKey(),
-                    rawHash
-            );
-            return calculatedSignature.equals(signature);
+            return momoSigner.verify(signature, rawHash);
         } catch (Exception e) {
             log.error("Lỗi khi verify callback signature: {}", e.getMessage(), e);
             return false;
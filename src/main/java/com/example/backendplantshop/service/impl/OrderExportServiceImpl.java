@@ -0,0 +1,115 @@
+package com.example.backendplantshop.service.impl;
+
+import com.example.backendplantshop.dto.request.OrderPageDtoRequest;
+import com.example.backendplantshop.dto.response.OrderExportRowDtoResponse;
+import com.example.backendplantshop.enums.ErrorCode;
+import com.example.backendplantshop.enums.ExportFormat;
+import com.example.backendplantshop.exception.AppException;
+import com.example.backendplantshop.mapper.OrderMapper;
+import com.example.backendplantshop.service.intf.OrderExportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderExportServiceImpl implements OrderExportService {
+    private static final int FLUSH_EVERY_ROWS = 500;
+    private static final String CSV_HEADER = "order_id,order_date,status,shipping_status,user_id,shipping_name,"
+            + "shipping_phone,shipping_address,total,discount_amount,final_total,order_detail_id,product_id,"
+            + "quantity,price_at_order,sub_total,payment_id,method_id,payment_status,payment_date";
+
+    private final OrderMapper orderMapper;
+    private final AuthServiceImpl authService;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    @Transactional(readOnly = true) // Cursor cần giữ SqlSession/kết nối mở trong suốt quá trình ghi
+    public void exportOrders(OrderPageDtoRequest filter, String format, HttpServletResponse response) throws IOException {
+        String role = authService.getCurrentRole();
+        if (!authService.isAdmin(role)) {
+            throw new AppException(ErrorCode.ACCESS_DENIED);
+        }
+        ExportFormat exportFormat = parseFormat(format);
+
+        // set header trước khi ghi dòng đầu tiên, sau đó không thể trả lỗi dạng ApiResponse nữa
+        String fileName = "orders-" + LocalDate.now() + (exportFormat == ExportFormat.CSV ? ".csv" : ".ndjson");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setContentType(exportFormat == ExportFormat.CSV ? "text/csv" : "application/x-ndjson");
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+
+        int rows = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+        try (Cursor<OrderExportRowDtoResponse> cursor = orderMapper.streamForExport(filter.getStatus(),
+                filter.getShipping_status(), filter.getUser_id(), filter.getFrom_date(), filter.getTo_date())) {
+            if (exportFormat == ExportFormat.CSV) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+            }
+            for (OrderExportRowDtoResponse row : cursor) {
+                if (exportFormat == ExportFormat.CSV) {
+                    writeCsvRow(writer, row);
+                } else {
+                    writer.write(objectMapper.writeValueAsString(row));
+                    writer.write('\n');
+                }
+                // đẩy dữ liệu xuống client định kỳ để buffer không phình ra
+                if (++rows % FLUSH_EVERY_ROWS == 0) {
+                    writer.flush();
+                }
+            }
+        }
+        writer.flush();
+        log.info("Đã xuất {} dòng đơn hàng dạng {}", rows, exportFormat);
+    }
+
+    private ExportFormat parseFormat(String format) {
+        if (format == null || format.trim().isEmpty()) {
+            return ExportFormat.CSV;
+        }
+        try {
+            return ExportFormat.valueOf(format.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new AppException(ErrorCode.INVALID_EXPORT_FORMAT);
+        }
+    }
+
+    private void writeCsvRow(Writer writer, OrderExportRowDtoResponse row) throws IOException {
+        Object[] values = {
+                row.getOrder_id(), row.getOrder_date(), row.getStatus(), row.getShipping_status(), row.getUser_id(),
+                row.getShipping_name(), row.getShipping_phone(), row.getShipping_address(),
+                row.getTotal(), row.getDiscount_amount(), row.getFinal_total(),
+                row.getOrder_detail_id(), row.getProduct_id(), row.getQuantity(), row.getPrice_at_order(), row.getSub_total(),
+                row.getPayment_id(), row.getMethod_id(), row.getPayment_status(), row.getPayment_date()
+        };
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writer.write(escapeCsv(values[i].toString()));
+            }
+        }
+        writer.write('\n');
+    }
+
+    // bọc trong dấu nháy nếu có ký tự đặc biệt của CSV
+    private static String escapeCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
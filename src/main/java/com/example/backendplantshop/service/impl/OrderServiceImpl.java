@@ -1,5 +1,6 @@
 package com.example.backendplantshop.service.impl;
 
+import com.example.backendplantshop.cache.ProductCatalogCache;
 import com.example.backendplantshop.convert.OrderConvert;
 import com.example.backendplantshop.convert.PaymentConvert;
 import com.example.backendplantshop.convert.UserConvert;
@@ -8,8 +9,8 @@ import com.example.backendplantshop.dto.request.momo.MoMoCallbackRequest;
 import com.example.backendplantshop.dto.response.DepositDtoResponse;
 import com.example.backendplantshop.dto.response.OrderDetailDtoResponse;
 import com.example.backendplantshop.dto.response.OrderDtoResponse;
+import com.example.backendplantshop.dto.response.OrderPageDtoResponse;
 import com.example.backendplantshop.dto.response.momo.CreatePaymentResponse;
-import com.example.backendplantshop.dto.response.user.UserDtoResponse;
 import com.example.backendplantshop.entity.*;
 import com.example.backendplantshop.enums.PaymentStatus;
 import com.example.backendplantshop.enums.ErrorCode;
@@ -26,9 +27,14 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -36,6 +42,9 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class OrderServiceImpl implements OrderService {
     private static final int DEPOSIT_QUANTITY_THRESHOLD = 10;
+    private static final int BATCH_QUERY_SIZE = 1000;
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
     private final OrderMapper orderMapper;
     private final OrderDetailMapper orderDetailMapper;
     private final ProductMapper productMapper;
@@ -48,6 +57,7 @@ public class OrderServiceImpl implements OrderService {
     private final PaymentService paymentService;
     private final UserMapper userMapper;
     private final DepositService depositService;
+    private final ProductCatalogCache productCatalogCache;
 
     @Override
     @Transactional //sử dụng transactional để rollback nếu xảy ra lỗi va commit nếu thành công
@@ -94,9 +104,19 @@ public class OrderServiceImpl implements OrderService {
         List<OrderDetails> orderDetailsList = new ArrayList<>();
         LocalDateTime now = LocalDateTime.now();
 
+        // Lấy tất cả sản phẩm trong đơn bằng 1 câu truy vấn, dùng lại cho response
+        List<Integer> productIds = orderRequest.getItems().stream()
+                .map(OrderDetailDtoRequest::getProduct_id)
+                .distinct()
+                .collect(Collectors.toList());
+        Map<Integer, Products> productsById = new HashMap<>();
+        for (Products product : productMapper.findByIds(productIds)) {
+            productsById.put(product.getProduct_id(), product);
+        }
+
         for (OrderDetailDtoRequest item : orderRequest.getItems()) {
             // Kiểm tra sản phẩm tồn tại
-            Products product = productMapper.findById(item.getProduct_id());
+            Products product = productsById.get(item.getProduct_id());
             if (product == null) {
                 throw new AppException(ErrorCode.PRODUCT_NOT_EXISTS);
             }
@@ -128,20 +148,32 @@ public class OrderServiceImpl implements OrderService {
         orderMapper.insert(order);
 
         // 7. Tạo OrderDetails và set orderid cho từng order detail và cập nhật số lượng sản phẩm
-        List<OrderDetailDtoResponse> orderDetailDtos = new ArrayList<>();
+        //1.tạo tất cả chi tiết đơn tương ứng với order_id bằng 1 câu INSERT
+        Map<Integer, Integer> quantitiesByProductId = new TreeMap<>(); // sắp theo product_id để khóa theo thứ tự cố định
         for (OrderDetails orderDetail : orderDetailsList) {
-            //1.tạo chi tiết đơn tương ứng với order_id
             orderDetail.setOrder_id(order.getOrder_id());
-            orderDetailMapper.insert(orderDetail);  //thêm chi tiết đơn vào DB
+            quantitiesByProductId.merge(orderDetail.getProduct_id(), orderDetail.getQuantity(), Integer::sum);
+        }
+        orderDetailMapper.insertBatch(orderDetailsList);
 
-            // 2.Cập nhật số lượng sản phẩm trong kho (trừ số lượng sau khi mua hàng)
-            productMapper.updateProductQuantity(orderDetail.getProduct_id(), orderDetail.getQuantity());
+        // 2.Giữ hàng trong kho (trừ số lượng sau khi mua hàng) bằng 1 câu UPDATE có điều kiện tồn kho đủ
+        // kiểm tra số lượng ở bước 4 chỉ để báo lỗi sớm, điều kiện trong câu UPDATE mới chống bán vượt khi nhiều đơn đặt cùng lúc
+        int reserved = productMapper.reserveStock(quantitiesByProductId);
+        if (reserved != quantitiesByProductId.size()) {
+            // ném lỗi để rollback toàn bộ đơn (kể cả các sản phẩm đã trừ được)
+            throw new AppException(ErrorCode.QUANTITY_IS_NOT_ENOUGH);
+        }
+        productCatalogCache.evictAll(quantitiesByProductId.keySet());
 
-            // 3.Lấy thông tin sản phẩm để trả về
-            Products product = productMapper.findById(orderDetail.getProduct_id());
-            OrderDetailDtoResponse orderDetailDto = OrderConvert.convertOrderDetailToOrderDetailDtoResponseWithProduct(
-                    orderDetail, product);
-            orderDetailDtos.add(orderDetailDto);
+        // 3.Dùng lại sản phẩm đã lấy lúc validate để trả về, cập nhật số lượng tồn cho khớp DB
+        quantitiesByProductId.forEach((productId, quantity) -> {
+            Products product = productsById.get(productId);
+            product.setQuantity(product.getQuantity() - quantity);
+        });
+        List<OrderDetailDtoResponse> orderDetailDtos = new ArrayList<>();
+        for (OrderDetails orderDetail : orderDetailsList) {
+            orderDetailDtos.add(OrderConvert.convertOrderDetailToOrderDetailDtoResponseWithProduct(
+                    orderDetail, productsById.get(orderDetail.getProduct_id())));
         }
 
         // 8. Tạo Payment khi FE gửi thông tin thanh toán
@@ -198,26 +230,7 @@ public class OrderServiceImpl implements OrderService {
             throw new AppException(ErrorCode.ACCESS_DENIED);
         }
 
-        List<OrderDetails> orderDetails = orderDetailMapper.findByOrderId(orderId);
-        List<OrderDetailDtoResponse> orderDetailDtos = new ArrayList<>();
-        
-        for (OrderDetails orderDetail : orderDetails) {
-            Products product = productMapper.findById(orderDetail.getProduct_id());
-            if (product != null) {
-                OrderDetailDtoResponse orderDetailDto = OrderConvert.convertOrderDetailToOrderDetailDtoResponseWithProduct(
-                        orderDetail, product);
-                orderDetailDtos.add(orderDetailDto);
-            } else {
-                // Nếu sản phẩm đã bị xóa, vẫn hiển thị order detail nhưng không có thông tin sản phẩm
-                OrderDetailDtoResponse orderDetailDto = OrderConvert.convertOrderDetailToOrderDetailDtoResponse(orderDetail);
-                orderDetailDtos.add(orderDetailDto);
-            }
-        }
-
-        OrderDtoResponse response = OrderConvert.convertOrderToOrderDtoResponse(order, orderDetails);
-        response.setOrder_details(orderDetailDtos);
-        enrichOrderResponseWithDeposit(response, orderDetails);
-        return response;
+        return buildOrderResponses(List.of(order), false).get(0);
     }
 
 
@@ -237,29 +250,7 @@ public class OrderServiceImpl implements OrderService {
             throw new AppException(ErrorCode.LIST_NOT_FOUND);
         }
 
-        return orders.stream()
-                .map(order -> {
-                    List<OrderDetails> orderDetails = orderDetailMapper.findByOrderId(order.getOrder_id());
-                    List<OrderDetailDtoResponse> orderDetailDtos = new ArrayList<>();
-                    
-                    for (OrderDetails orderDetail : orderDetails) {
-                        Products product = productMapper.findById(orderDetail.getProduct_id());
-                        if (product != null) {
-                            OrderDetailDtoResponse orderDetailDto = OrderConvert.convertOrderDetailToOrderDetailDtoResponseWithProduct(
-                                    orderDetail, product);
-                            orderDetailDtos.add(orderDetailDto);
-                        } else {
-                            OrderDetailDtoResponse orderDetailDto = OrderConvert.convertOrderDetailToOrderDetailDtoResponse(orderDetail);
-                            orderDetailDtos.add(orderDetailDto);
-                        }
-                    }
-                    
-                    OrderDtoResponse response = OrderConvert.convertOrderToOrderDtoResponse(order, orderDetails);
-                     response.setOrder_details(orderDetailDtos);
-                     enrichOrderResponseWithDeposit(response, orderDetails);
-                    return response;
-                })
-                .collect(Collectors.toList());
+        return buildOrderResponses(orders, false);
     }
 
     @Override
@@ -282,42 +273,72 @@ public class OrderServiceImpl implements OrderService {
 
         log.info("Lấy tất cả đơn hàng: {} đơn hàng", orders.size());
 
-        // Convert sang DTO và thêm thông tin chi tiết
-        return orders.stream()
-                .map(order -> {
-                    // Lấy chi tiết đơn hàng
-                    List<OrderDetails> orderDetails = orderDetailMapper.findByOrderId(order.getOrder_id());
-                    List<OrderDetailDtoResponse> orderDetailDtos = new ArrayList<>();
-                    
-                    // Convert order details sang DTO với thông tin sản phẩm
-                    for (OrderDetails orderDetail : orderDetails) {
-                        Products product = productMapper.findById(orderDetail.getProduct_id());
-                        if (product != null) {
-                            OrderDetailDtoResponse orderDetailDto = OrderConvert.convertOrderDetailToOrderDetailDtoResponseWithProduct(
-                                    orderDetail, product);
-                            orderDetailDtos.add(orderDetailDto);
-                        } else {
-                            // Nếu sản phẩm không tồn tại, vẫn trả về order detail nhưng không có thông tin sản phẩm
-                            OrderDetailDtoResponse orderDetailDto = OrderConvert.convertOrderDetailToOrderDetailDtoResponse(orderDetail);
-                            orderDetailDtos.add(orderDetailDto);
-                        }
-                    }
-                    
-                    // Lấy thông tin user
-                    Users user = userMapper.findById(order.getUser_id());
-                    UserDtoResponse userDto = null;
-                    if (user != null) {
-                        userDto = UserConvert.convertUsersToUserDtoResponse(user);
-                    }
-                    
-                    // Tạo response DTO
-                    OrderDtoResponse response = OrderConvert.convertOrderToOrderDtoResponse(order, orderDetails);
-                    response.setOrder_details(orderDetailDtos);
-                     enrichOrderResponseWithDeposit(response, orderDetails);
-                    response.setUser(userDto); // Set thông tin user vào response
-                    return response;
-                })
-                .collect(Collectors.toList());
+        // Convert sang DTO và thêm thông tin chi tiết, user, đặt cọc (load theo lô)
+        return buildOrderResponses(orders, true);
+    }
+
+    @Override
+    public OrderPageDtoResponse getOrdersPage(OrderPageDtoRequest request) {
+        // Kiểm tra quyền: chỉ admin mới được xem tất cả đơn hàng
+        String role = authService.getCurrentRole();
+        if (!authService.isAdmin(role)) {
+            throw new AppException(ErrorCode.ACCESS_DENIED);
+        }
+
+        int size = request.getSize() == null || request.getSize() <= 0
+                ? DEFAULT_PAGE_SIZE
+                : Math.min(request.getSize(), MAX_PAGE_SIZE);
+
+        LocalDateTime cursorDate = null;
+        Integer cursorId = null;
+        if (request.getCursor() != null && !request.getCursor().trim().isEmpty()) {
+            String[] cursor = decodeCursor(request.getCursor().trim());
+            try {
+                cursorDate = LocalDateTime.parse(cursor[0]);
+                cursorId = Integer.parseInt(cursor[1]);
+            } catch (RuntimeException e) {
+                throw new AppException(ErrorCode.INVALID_CURSOR);
+            }
+        }
+
+        // Lấy dư 1 đơn để biết còn trang sau hay không
+        List<Orders> orders = orderMapper.findPage(request.getStatus(), request.getShipping_status(), request.getUser_id(),
+                request.getFrom_date(), request.getTo_date(), cursorDate, cursorId, size + 1);
+        boolean hasMore = orders.size() > size;
+        if (hasMore) {
+            orders = orders.subList(0, size);
+        }
+
+        String nextCursor = null;
+        if (hasMore) {
+            Orders last = orders.get(orders.size() - 1);
+            nextCursor = encodeCursor(last.getOrder_date(), last.getOrder_id());
+        }
+
+        return OrderPageDtoResponse.builder()
+                .orders(buildOrderResponses(orders, true))
+                .next_cursor(nextCursor)
+                .has_more(hasMore)
+                .build();
+    }
+
+    // cursor = base64url("order_date|order_id") của đơn cuối trang trước
+    private static String encodeCursor(LocalDateTime orderDate, int orderId) {
+        String raw = orderDate + "|" + orderId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 2) {
+                throw new AppException(ErrorCode.INVALID_CURSOR);
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new AppException(ErrorCode.INVALID_CURSOR);
+        }
     }
 
 
@@ -418,6 +439,15 @@ public class OrderServiceImpl implements OrderService {
             throw new AppException(ErrorCode.MISSING_REQUIRED_FIELD);
         }
 
+        applyOrderStatus(order, request.getStatus());
+
+        // Lấy order details, sản phẩm và đặt cọc để trả về
+        return buildOrderResponses(List.of(order), false).get(0);
+    }
+
+    // Đổi trạng thái đơn, không kiểm tra quyền (đã kiểm tra ở updateOrderStatus, hoặc là callback thanh toán từ MoMo)
+    private void applyOrderStatus(Orders order, OrderSatus status) {
+        int orderId = order.getOrder_id();
         // Validate logic trước khi update
         PaymentStatus currentPaymentStatus = getPaymentStatusFromOrder(orderId);
         ShippingStatus currentShippingStatus = order.getShipping_status() != null 
@@ -427,21 +457,22 @@ public class OrderServiceImpl implements OrderService {
         // Lưu trạng thái đơn hàng trước khi cập nhật để kiểm tra xem có cần cộng lại số lượng không
         OrderSatus previousOrderStatus = order.getStatus();
         
-        validateOrderStatusLogic(request.getStatus(), currentShippingStatus, currentPaymentStatus);
+        validateOrderStatusLogic(status, currentShippingStatus, currentPaymentStatus);
 
         // Cập nhật status
-        order.setStatus(request.getStatus());
+        order.setStatus(status);
         order.setUpdated_at(LocalDateTime.now());
         orderMapper.update(order);
 
         // Nếu hủy đơn (CANCELLED), xử lý hoàn tiền nếu đã thanh toán thành công
-        if (request.getStatus() == OrderSatus.CANCELLED) {
+        if (status == OrderSatus.CANCELLED) {
             try {
                 // Nếu đơn chưa được xác nhận (PENDING_CONFIRMATION), cộng lại số lượng sản phẩm vào kho
                 if (previousOrderStatus == OrderSatus.PENDING_CONFIRMATION) {
                     List<OrderDetails> orderDetails = orderDetailMapper.findByOrderId(orderId);
                     for (OrderDetails orderDetail : orderDetails) {
                         productMapper.restoreProductQuantity(orderDetail.getProduct_id(), orderDetail.getQuantity());
+                        productCatalogCache.evict(orderDetail.getProduct_id());
                         log.info("Đã cộng lại {} sản phẩm (product_id: {}) vào kho khi hủy đơn {} (đơn chưa được xác nhận)",
                                 orderDetail.getQuantity(), orderDetail.getProduct_id(), orderId);
                     }
@@ -470,27 +501,6 @@ public class OrderServiceImpl implements OrderService {
                 // Không throw exception để không rollback order cancellation
             }
         }
-
-        // Lấy order details để trả về
-        List<OrderDetails> orderDetails = orderDetailMapper.findByOrderId(orderId);
-        List<OrderDetailDtoResponse> orderDetailDtos = new ArrayList<>();
-        
-        for (OrderDetails orderDetail : orderDetails) {
-            Products product = productMapper.findById(orderDetail.getProduct_id());
-            if (product != null) {
-                OrderDetailDtoResponse orderDetailDto = OrderConvert.convertOrderDetailToOrderDetailDtoResponseWithProduct(
-                        orderDetail, product);
-                orderDetailDtos.add(orderDetailDto);
-            } else {
-                OrderDetailDtoResponse orderDetailDto = OrderConvert.convertOrderDetailToOrderDetailDtoResponse(orderDetail);
-                orderDetailDtos.add(orderDetailDto);
-            }
-        }
-
-        OrderDtoResponse response = OrderConvert.convertOrderToOrderDtoResponse(order, orderDetails);
-        response.setOrder_details(orderDetailDtos);
-        enrichOrderResponseWithDeposit(response, orderDetails);  //bổ sung thông tin đặt cọc (nếu có)
-        return response;
     }
 
     @Override
@@ -536,26 +546,8 @@ public class OrderServiceImpl implements OrderService {
             markCodPaymentsAsSuccess(orderId);
         }
 
-        // Lấy order details để trả về
-        List<OrderDetails> orderDetails = orderDetailMapper.findByOrderId(orderId);
-        List<OrderDetailDtoResponse> orderDetailDtos = new ArrayList<>();
-
-        for (OrderDetails orderDetail : orderDetails) {
-            Products product = productMapper.findById(orderDetail.getProduct_id());
-            if (product != null) {
-                OrderDetailDtoResponse orderDetailDto = OrderConvert.convertOrderDetailToOrderDetailDtoResponseWithProduct(
-                        orderDetail, product);
-                orderDetailDtos.add(orderDetailDto);
-            } else {
-                OrderDetailDtoResponse orderDetailDto = OrderConvert.convertOrderDetailToOrderDetailDtoResponse(orderDetail);
-                orderDetailDtos.add(orderDetailDto);
-            }
-        }
-
-        OrderDtoResponse response = OrderConvert.convertOrderToOrderDtoResponse(order, orderDetails);
-        response.setOrder_details(orderDetailDtos);
-        enrichOrderResponseWithDeposit(response, orderDetails); //bổ sung thông tin đặt cọc (nếu có)
-        return response;
+        // Lấy order details, sản phẩm và đặt cọc để trả về
+        return buildOrderResponses(List.of(order), false).get(0);
     }
 
     private void enrichOrderResponseWithDeposit(OrderDtoResponse response, List<OrderDetails> orderDetails) {
@@ -569,23 +561,122 @@ public class OrderServiceImpl implements OrderService {
         Deposit deposit = depositMapper.findLatestByOrderId(response.getOrder_id());
         if (deposit != null) {
             PaymentMethod method = paymentMethodMapper.findById(deposit.getMethod_id());
-            DepositDtoResponse depositDto = DepositDtoResponse.builder()
-                    .deposit_id(deposit.getDeposit_id())
-                    .order_id(deposit.getOrder_id())
-                    .method_id(deposit.getMethod_id())
-                    .method_name(method != null ? method.getMethod_name() : null)
-                    .amount(deposit.getAmount())
-                    .paid(deposit.getPaid())
-                    .momo_trans_id(deposit.getMomo_trans_id())
-                    .created_at(deposit.getCreated_at())
-                    .paid_at(deposit.getPaid_at())
-                    .build();
-            response.setDeposit(depositDto);
+            response.setDeposit(toDepositDtoResponse(deposit, method != null ? method.getMethod_name() : null));
         } else {
             response.setDeposit(null);
         }
     }
 
+    private DepositDtoResponse toDepositDtoResponse(Deposit deposit, String methodName) {
+        return DepositDtoResponse.builder()
+                .deposit_id(deposit.getDeposit_id())
+                .order_id(deposit.getOrder_id())
+                .method_id(deposit.getMethod_id())
+                .method_name(methodName)
+                .amount(deposit.getAmount())
+                .paid(deposit.getPaid())
+                .momo_trans_id(deposit.getMomo_trans_id())
+                .created_at(deposit.getCreated_at())
+                .paid_at(deposit.getPaid_at())
+                .build();
+    }
+
+    // Ghép response cho danh sách đơn với số câu truy vấn cố định (mỗi bảng 1 câu IN (...) cho mỗi lô)
+    // thay vì truy vấn chi tiết, sản phẩm, user, đặt cọc riêng cho từng đơn (N+1)
+    private List<OrderDtoResponse> buildOrderResponses(List<Orders> orders, boolean includeUser) {
+        List<Integer> orderIds = orders.stream()
+                .map(Orders::getOrder_id)
+                .collect(Collectors.toList());
+
+        // 1. Chi tiết đơn hàng, nhóm theo order_id
+        Map<Integer, List<OrderDetails>> detailsByOrderId = new HashMap<>();
+        for (List<Integer> batch : partition(orderIds)) {
+            for (OrderDetails orderDetail : orderDetailMapper.findByOrderIds(batch)) {
+                detailsByOrderId.computeIfAbsent(orderDetail.getOrder_id(), id -> new ArrayList<>()).add(orderDetail);
+            }
+        }
+
+        // 2. Sản phẩm của tất cả chi tiết đơn
+        List<Integer> productIds = detailsByOrderId.values().stream()
+                .flatMap(List::stream)
+                .map(OrderDetails::getProduct_id)
+                .distinct()
+                .collect(Collectors.toList());
+        Map<Integer, Products> productsById = new HashMap<>();
+        for (List<Integer> batch : partition(productIds)) {
+            for (Products product : productMapper.findByIds(batch)) {
+                productsById.put(product.getProduct_id(), product);
+            }
+        }
+
+        // 3. Thông tin user (chỉ cần cho màn hình admin)
+        Map<Integer, Users> usersById = new HashMap<>();
+        if (includeUser) {
+            List<Integer> userIds = orders.stream()
+                    .map(Orders::getUser_id)
+                    .distinct()
+                    .collect(Collectors.toList());
+            for (List<Integer> batch : partition(userIds)) {
+                for (Users user : userMapper.findByIds(batch)) {
+                    usersById.put(user.getUser_id(), user);
+                }
+            }
+        }
+
+        // 4. Đặt cọc mới nhất của từng đơn (query đã sắp xếp nên bản ghi đầu tiên của mỗi đơn là mới nhất)
+        Map<Integer, Deposit> latestDepositByOrderId = new HashMap<>();
+        for (List<Integer> batch : partition(orderIds)) {
+            for (Deposit deposit : depositMapper.findByOrderIds(batch)) {
+                latestDepositByOrderId.putIfAbsent(deposit.getOrder_id(), deposit);
+            }
+        }
+        Map<Integer, String> methodNamesById = new HashMap<>();
+        if (!latestDepositByOrderId.isEmpty()) {
+            for (PaymentMethod method : paymentMethodMapper.getAll()) {
+                methodNamesById.put(method.getMethod_id(), method.getMethod_name());
+            }
+        }
+
+        List<OrderDtoResponse> responses = new ArrayList<>(orders.size());
+        for (Orders order : orders) {
+            List<OrderDetails> orderDetails = detailsByOrderId.getOrDefault(order.getOrder_id(), new ArrayList<>());
+            List<OrderDetailDtoResponse> orderDetailDtos = new ArrayList<>();
+            for (OrderDetails orderDetail : orderDetails) {
+                Products product = productsById.get(orderDetail.getProduct_id());
+                if (product != null) {
+                    orderDetailDtos.add(OrderConvert.convertOrderDetailToOrderDetailDtoResponseWithProduct(orderDetail, product));
+                } else {
+                    // Nếu sản phẩm đã bị xóa, vẫn hiển thị order detail nhưng không có thông tin sản phẩm
+                    orderDetailDtos.add(OrderConvert.convertOrderDetailToOrderDetailDtoResponse(orderDetail));
+                }
+            }
+
+            OrderDtoResponse response = OrderConvert.convertOrderToOrderDtoResponse(order, orderDetails);
+            response.setOrder_details(orderDetailDtos);
+            response.setDeposit_payment(null);
+            response.setDeposit_required(requiresDeposit(orderDetails));
+            Deposit deposit = latestDepositByOrderId.get(order.getOrder_id());
+            response.setDeposit(deposit != null
+                    ? toDepositDtoResponse(deposit, methodNamesById.get(deposit.getMethod_id()))
+                    : null);
+            if (includeUser) {
+                Users user = usersById.get(order.getUser_id());
+                response.setUser(user != null ? UserConvert.convertUsersToUserDtoResponse(user) : null);
+            }
+            responses.add(response);
+        }
+        return responses;
+    }
+
+    // chia danh sách id thành từng lô để câu IN (...) không quá dài
+    private static List<List<Integer>> partition(List<Integer> ids) {
+        List<List<Integer>> batches = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += BATCH_QUERY_SIZE) {
+            batches.add(ids.subList(i, Math.min(i + BATCH_QUERY_SIZE, ids.size())));
+        }
+        return batches;
+    }
+
     private boolean requiresDeposit(List<OrderDetails> orderDetails) {
         if (orderDetails == null || orderDetails.isEmpty()) {
             return false;
@@ -759,17 +850,18 @@ public class OrderServiceImpl implements OrderService {
     @Transactional
     public void handleOrderPaymentCallback(Integer orderId, MoMoCallbackRequest callbackRequest) {
         if (callbackRequest.getResultCode() != null && callbackRequest.getResultCode() == 0) {
-            try {
-                if (orderId != null) {
-                    paymentService.updatePaymentsByOrderId(orderId, PaymentStatus.SUCCESS);
-                    UpdateOrderStatusDtoRequest statusRequest = UpdateOrderStatusDtoRequest.builder()
-                                    .status(OrderSatus.CONFIRMED)
-                                    .build();
-                    updateOrderStatus(orderId, statusRequest);
+            // Không nuốt lỗi: lỗi thì rollback cả dòng momo_callbacks để lần gửi lại / đối soát xử lý tiếp
+            if (orderId != null) {
+                paymentService.updatePaymentsByOrderId(orderId, PaymentStatus.SUCCESS);
+                // callback không có user đăng nhập nên đổi trạng thái trực tiếp, không qua updateOrderStatus;
+                // chỉ xác nhận đơn đang chờ, IPN đến muộn không được mở lại đơn đã hủy/đang giao
+                Orders order = orderMapper.findById(orderId);
+                if (order != null && order.getStatus() == OrderSatus.PENDING_CONFIRMATION) {
+                    applyOrderStatus(order, OrderSatus.CONFIRMED);
                     log.info("Đã cập nhật trạng thái đơn hàng {} thành công sau khi thanh toán", orderId);
+                } else {
+                    log.warn("Đơn hàng {} không ở trạng thái chờ xác nhận, chỉ cập nhật payment", orderId);
                 }
-            } catch (Exception e) {
-                log.error("Lỗi khi cập nhật trạng thái đơn hàng từ callback: {}", e.getMessage(), e);
             }
         } else {
             log.warn("Thanh toán thất bại: orderId={}, message={}",
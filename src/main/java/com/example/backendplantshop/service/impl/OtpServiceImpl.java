@@ -1,9 +1,8 @@
 package com.example.backendplantshop.service.impl;
 
-import com.example.backendplantshop.entity.EmailOtp;
 import com.example.backendplantshop.enums.ErrorCode;
 import com.example.backendplantshop.exception.AppException;
-import com.example.backendplantshop.mapper.EmailOtpMapper;
+import com.example.backendplantshop.otp.OtpStore;
 import com.example.backendplantshop.service.intf.EmailService;
 import com.example.backendplantshop.service.intf.OtpService;
 import lombok.RequiredArgsConstructor;
@@ -18,7 +17,7 @@ import java.time.LocalDateTime;
 @Service
 @RequiredArgsConstructor
 public class OtpServiceImpl implements OtpService {
-    private final EmailOtpMapper emailOtpMapper;
+    private final OtpStore otpStore; // DB hoặc bộ nhớ tùy otp.store
     private final EmailService emailService;
     private static final int OTP_LENGTH = 6;
     private static final int OTP_EXPIRY_MINUTES = 5;
@@ -44,20 +43,10 @@ public class OtpServiceImpl implements OtpService {
         LocalDateTime now = LocalDateTime.now();
         LocalDateTime expiresAt = now.plusMinutes(OTP_EXPIRY_MINUTES);
         
-        // Lưu OTP vào database
-        // user_id có thể NULL khi gửi OTP cho đăng ký (user chưa tồn tại)
-        EmailOtp emailOtp = EmailOtp.builder()
-                .email(email)
-                .user_id(userId) // NULL khi đăng ký, có giá trị khi quên mật khẩu
-                .otp_code(otpCode)
-                .created_at(now)
-                .expires_at(expiresAt)
-                .is_deleted(false)
-                .build();
+        // Lưu OTP (user_id NULL khi đăng ký, có giá trị khi quên mật khẩu)
+        otpStore.save(email, userId, otpCode, expiresAt);
         
-        emailOtpMapper.insertOtp(emailOtp);
-        
-        // Gửi email OTP
+        // Gửi email OTP (bất đồng bộ qua hàng đợi, sau khi commit)
         emailService.sendOtpEmail(email, otpCode);
         
         log.info("Đã tạo và gửi OTP cho email: {} với user_id: {}", email, userId);
@@ -68,35 +57,29 @@ public class OtpServiceImpl implements OtpService {
     @Transactional
     public boolean verifyOtp(String email, String otpCode) {
         // Chỉ verify OTP, KHÔNG mark as used
-        // OTP sẽ được mark as used sau khi reset password/register thành công
+        // register/reset password dùng consumeOtp để kiểm tra và mark trong cùng 1 bước
         // Tìm OTP với otp_code chính xác
-        EmailOtp emailOtp = emailOtpMapper.findByEmailAndOtp(email, otpCode);
-        
-        if (emailOtp == null) {
+        if (!otpStore.matches(email, otpCode)) {
             log.warn("OTP không hợp lệ hoặc đã hết hạn cho email: {} với OTP: {}", email, otpCode);
             return false;
         }
         
-        log.info("Đã xác thực OTP thành công cho email: {} với OTP ID: {} (chưa mark as used)", email, emailOtp.getOtp_id());
+        log.info("Đã xác thực OTP thành công cho email: {} (chưa mark as used)", email);
         return true;
     }
 
 
-    //đánh dấu otp đã được sử dụng
+    //kiểm tra và đánh dấu otp đã được sử dụng trong 1 bước, gọi trước khi ghi user/mật khẩu
     @Override
     @Transactional
-    public void markOtpAsUsed(String email, String otpCode) {
-        // Tìm OTP chưa được mark và mark as used
-//        EmailOtp emailOtp = emailOtpMapper.findByEmailAndOtpForMark(email, otpCode);
-        EmailOtp emailOtp = emailOtpMapper.findByEmailAndOtp(email, otpCode);
-
-
-        if (emailOtp != null) {
-            emailOtpMapper.markAsUsed(emailOtp.getOtp_id());
-            log.info("Đã đánh dấu OTP ID: {} đã sử dụng cho email: {} với OTP: {}", emailOtp.getOtp_id(), email, otpCode);
-        } else {
-            log.warn("Không tìm thấy OTP hợp lệ để mark as used cho email: {} với OTP: {} (có thể đã được mark, hết hạn, hoặc không tồn tại)", email, otpCode);
+    public boolean consumeOtp(String email, String otpCode) {
+        // chỉ 1 request thành công cho mỗi mã, request dùng lại mã (kể cả đồng thời) nhận false
+        if (otpStore.consume(email, otpCode)) {
+            log.info("Đã đánh dấu OTP đã sử dụng cho email: {}", email);
+            return true;
         }
+        log.warn("OTP không hợp lệ, hết hạn hoặc đã được sử dụng cho email: {}", email);
+        return false;
     }
 
 
@@ -104,7 +87,7 @@ public class OtpServiceImpl implements OtpService {
     @Override
     @Transactional
     public void updateUserIdForOtp(String email, String otpCode, Integer userId) {
-        emailOtpMapper.updateUserIdByEmailAndOtp(email, otpCode, userId);
+        otpStore.attachUser(email, otpCode, userId);
         log.info("Đã cập nhật user_id = {} cho OTP của email: {}", userId, email);
     }
 
@@ -1,7 +1,11 @@
 package com.example.backendplantshop.service.impl;
 
+import com.example.backendplantshop.cache.ProductCatalogCache;
 import com.example.backendplantshop.dto.request.products.ProductDtoRequest;
+import com.example.backendplantshop.dto.request.products.ProductFilterDtoRequest;
 import com.example.backendplantshop.dto.response.ProductDtoResponse;
+import com.example.backendplantshop.dto.response.ProductFilterDtoResponse;
+import com.example.backendplantshop.dto.response.ProductSearchDtoResponse;
 import com.example.backendplantshop.entity.Products;
 import com.example.backendplantshop.entity.Users;
 import com.example.backendplantshop.enums.ErrorCode;
@@ -10,6 +14,8 @@ import com.example.backendplantshop.mapper.ProductMapper;
 import com.example.backendplantshop.mapper.CategoryMapper;
 import com.example.backendplantshop.mapper.OrderDetailMapper;
 import com.example.backendplantshop.convert.ProductConvert;
+import com.example.backendplantshop.search.ProductFacetIndex;
+import com.example.backendplantshop.search.ProductSearchIndex;
 import com.example.backendplantshop.service.intf.ProductService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -18,30 +24,108 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 
 public class ProductServiceImpl implements ProductService {
+    private static final int DEFAULT_SEARCH_PAGE_SIZE = 20;
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+    private static final int MAX_SEARCH_PAGE = 500;
+
     private final ProductMapper productMapper;
     private final AuthServiceImpl authService;
     private final CloudinaryServiceImpl cloudinaryService;
     private final CategoryMapper categoryMapper;
     private final CategoryServiceImpl categoryServiceImpl;
     private final OrderDetailMapper orderDetailMapper;
+    private final ProductCatalogCache productCatalogCache;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductFacetIndex productFacetIndex;
 
 
     public ProductDtoResponse findProductById(int id){
-        var product = productMapper.findById(id);
+        var product = productCatalogCache.findById(id);
         if (product == null){
             throw new AppException(ErrorCode.PRODUCT_NOT_EXISTS);
         }
         return ProductConvert.convertToProductDtoResponse(product);
     }
 
+    // ETag là hash nội dung đang phục vụ, chỉ đổi khi dữ liệu sản phẩm đổi
+    @Override
+    public String getCatalogETag() {
+        return productCatalogCache.catalogETag();
+    }
+
+    @Override
+    public String getProductETag(int id) {
+        return productCatalogCache.productETag(id);
+    }
+
+    @Override
+    public ProductSearchDtoResponse searchProducts(String keyword, Integer page, Integer size) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            throw new AppException(ErrorCode.SEARCH_KEYWORD_EMPTY);
+        }
+        int pageSize = size == null || size <= 0 ? DEFAULT_SEARCH_PAGE_SIZE : Math.min(size, MAX_SEARCH_PAGE_SIZE);
+        int pageIndex = page == null || page < 0 ? 0 : Math.min(page, MAX_SEARCH_PAGE);
+
+        // index chỉ trả về id đã xếp hạng, dữ liệu sản phẩm (giá, tồn kho) lấy từ cache nên luôn mới
+        ProductSearchIndex.SearchHits hits = productSearchIndex.search(keyword, pageIndex * pageSize, pageSize);
+        List<Products> products = hits.getProductIds().isEmpty()
+                ? List.of()
+                : productCatalogCache.findAllById(hits.getProductIds());
+
+        return ProductSearchDtoResponse.builder()
+                .products(ProductConvert.convertListProductToListProductDtoResponse(products))
+                .total(hits.getTotal())
+                .page(pageIndex)
+                .size(pageSize)
+                .build();
+    }
+
+    @Override
+    public ProductFilterDtoResponse filterProducts(ProductFilterDtoRequest request) {
+        if (request.getMin_price() != null && request.getMax_price() != null
+                && request.getMin_price().compareTo(request.getMax_price()) > 0) {
+            throw new AppException(ErrorCode.INVALID_PRICE_RANGE);
+        }
+        int pageSize = request.getSize() == null || request.getSize() <= 0
+                ? DEFAULT_SEARCH_PAGE_SIZE
+                : Math.min(request.getSize(), MAX_SEARCH_PAGE_SIZE);
+        int pageIndex = request.getPage() == null || request.getPage() < 0 ? 0 : Math.min(request.getPage(), MAX_SEARCH_PAGE);
+        List<String> sizes = request.getSizes() == null ? null : request.getSizes().stream()
+                .filter(size -> size != null && !size.trim().isEmpty())
+                .map(String::trim)
+                .collect(Collectors.toList());
+
+        // tổng số và số lượng từng facet tính trên bitset trong bộ nhớ, DB chỉ phải trả đúng 1 trang
+        ProductFacetIndex.FacetCounts counts = productFacetIndex.count(request.getCategory_ids(), sizes,
+                request.getMin_price(), request.getMax_price(), request.getOut_of_stock());
+        List<Products> products = counts.getTotal() == 0
+                ? List.of()
+                : productMapper.findFiltered(request.getCategory_ids(), sizes, request.getMin_price(),
+                        request.getMax_price(), request.getOut_of_stock(), pageIndex * pageSize, pageSize);
+
+        return ProductFilterDtoResponse.builder()
+                .products(ProductConvert.convertListProductToListProductDtoResponse(products))
+                .total(counts.getTotal())
+                .page(pageIndex)
+                .size(pageSize)
+                .category_counts(counts.getCategoryCounts())
+                .size_counts(counts.getSizeCounts())
+                .in_stock_count(counts.getInStockCount())
+                .out_of_stock_count(counts.getOutOfStockCount())
+                .min_price(counts.getMinPrice())
+                .max_price(counts.getMaxPrice())
+                .build();
+    }
+
     public List<ProductDtoResponse> getAllProducts(){
-        var products = ProductConvert.convertListProductToListProductDtoResponse(productMapper.getAll());
+        var products = ProductConvert.convertListProductToListProductDtoResponse(productCatalogCache.getAll());
         if(products.isEmpty()){
             throw new AppException(ErrorCode.LIST_NOT_FOUND);
         }
@@ -97,6 +181,9 @@ public class ProductServiceImpl implements ProductService {
                 String imgUrl = processImage(image, productRequest.getImg_url());
                 Products productToUpdate = ProductConvert.toRestoreProduct(existingProduct, productRequest, imgUrl);
                 productMapper.update(productToUpdate);
+                productCatalogCache.evict(existingProduct.getProduct_id());
+                productSearchIndex.reindex(existingProduct.getProduct_id());
+                productFacetIndex.reindex(existingProduct.getProduct_id());
                 return;
             }
         }
@@ -105,6 +192,9 @@ public class ProductServiceImpl implements ProductService {
         String imgUrl = processImage(image, productRequest.getImg_url());
         Products product = ProductConvert.toProducts(productRequest, imgUrl);
         productMapper.insert(product);
+        productCatalogCache.evictCatalog();
+        productSearchIndex.reindex(product.getProduct_id());
+        productFacetIndex.reindex(product.getProduct_id());
 
     }
 
@@ -155,6 +245,9 @@ public class ProductServiceImpl implements ProductService {
         Products updatedProduct = ProductConvert.toUpdatedProducts(id, productRequest, existingProduct);
         updatedProduct.setImg_url(imgUrl);
         productMapper.update(updatedProduct);
+        productCatalogCache.evict(id);
+        productSearchIndex.reindex(id);
+        productFacetIndex.reindex(id);
     }
 
 
@@ -173,6 +266,9 @@ public class ProductServiceImpl implements ProductService {
             throw new AppException(ErrorCode.PRODUCT_IN_ORDER_NOT_DELETABLE);
         }
         productMapper.delete(id);
+        productCatalogCache.evict(id);
+        productSearchIndex.reindex(id);
+        productFacetIndex.reindex(id);
     }
 
     private String processImage(MultipartFile image, String defaultImgUrl) {
@@ -233,6 +329,9 @@ public class ProductServiceImpl implements ProductService {
         }
         
         productMapper.restoreProduct(id);
+        productCatalogCache.evict(id);
+        productSearchIndex.reindex(id);
+        productFacetIndex.reindex(id);
     }
 
     @Override
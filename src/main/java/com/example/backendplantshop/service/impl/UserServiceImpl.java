@@ -1,5 +1,6 @@
 package com.example.backendplantshop.service.impl;
 
+import com.example.backendplantshop.cache.UserPrincipalCache;
 import com.example.backendplantshop.convert.UserConvert;
 import com.example.backendplantshop.dto.request.users.UserDtoRequest;
 import com.example.backendplantshop.dto.response.user.LoginDtoResponse;
@@ -11,6 +12,7 @@ import com.example.backendplantshop.enums.OrderSatus;
 import com.example.backendplantshop.enums.ShippingStatus;
 import com.example.backendplantshop.exception.AppException;
 import com.example.backendplantshop.mapper.*;
+import com.example.backendplantshop.security.TokenRevocationRegistry;
 import com.example.backendplantshop.service.intf.UserService;
 import com.example.backendplantshop.service.intf.UserTokenService;
 import lombok.RequiredArgsConstructor;
@@ -32,6 +34,8 @@ public class UserServiceImpl implements UserService {
     private final CartMapper cartMapper;
     private final UserTokenMapper userTokenMapper;
     private final OrderMapper orderMapper;
+    private final UserPrincipalCache userPrincipalCache;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
 
 
     private String clean(String input) {
@@ -132,9 +136,11 @@ public LoginDtoResponse update(int id, UserDtoRequest userDtoRequest) {
         }
         throw e;
     }
+    userPrincipalCache.evict(id);
 
     if (roleChanged) {
         userTokenService.revokeTokensByUser(id);
+        tokenRevocationRegistry.revokeAll(id);
     }
 
     return null;
@@ -157,7 +163,9 @@ public LoginDtoResponse update(int id, UserDtoRequest userDtoRequest) {
         cartDetailMapper.deleteByUserId(id);
         cartMapper.deleteByUserId(id);
         userTokenMapper.revokeTokensByUser(id);
+        tokenRevocationRegistry.revokeAll(id);
         userMapper.delete(id);
+        userPrincipalCache.evict(id);
     }
 
 
@@ -211,6 +219,7 @@ public LoginDtoResponse update(int id, UserDtoRequest userDtoRequest) {
         cartMapper.restoreByUserId(id);
         cartDetailMapper.restoreByUserId(id);
         userMapper.restoreUser(id);
+        userPrincipalCache.evict(id);
     }
 
     public List<UserDtoResponse> findAllUserDeleted() {
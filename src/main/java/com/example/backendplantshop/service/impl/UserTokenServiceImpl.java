@@ -1,10 +1,9 @@
 package com.example.backendplantshop.service.impl;
 
 import com.example.backendplantshop.entity.UserTokens;
-import com.example.backendplantshop.enums.ErrorCode;
-import com.example.backendplantshop.exception.AppException;
 import com.example.backendplantshop.mapper.UserTokenMapper;
 import com.example.backendplantshop.service.intf.UserTokenService;
+import com.example.backendplantshop.util.TokenHashUtil;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -19,20 +18,25 @@ public class UserTokenServiceImpl implements UserTokenService {
     @Override
     public void saveToken(UserTokens token) {
         token.setCreated_at(LocalDateTime.now());
+        // chỉ lưu SHA-256, lộ DB cũng không dùng lại được refresh token
+        token.setToken_hash(TokenHashUtil.sha256Hex(token.getToken()));
         userTokenMapper.insertToken(token);
     }
+
+    // Mỗi lần đăng nhập là 1 dòng riêng nên tra thẳng theo hash, các thiết bị khác không ảnh hưởng nhau
     @Override
-    public UserTokens revokeTokensByUser(int userId) {
-        userTokenMapper.revokeTokensByUser(userId);
-        return null;
+    public UserTokens findByRefreshToken(String refreshToken) {
+        return userTokenMapper.findByTokenHash(TokenHashUtil.sha256Hex(refreshToken));
     }
 
     @Override
-    public UserTokens findTokenByUser(Integer userId) {
-        if (userId == null) {
-            throw  new AppException(ErrorCode.USER_NOT_EXISTS);
-        }
-        return userTokenMapper.findTokensByUserId(userId);
+    public void revokeToken(int tokenId) {
+        userTokenMapper.revokeToken(tokenId);
+    }
+    @Override
+    public UserTokens revokeTokensByUser(int userId) {
+        userTokenMapper.revokeTokensByUser(userId);
+        return null;
     }
 
 //    @Override
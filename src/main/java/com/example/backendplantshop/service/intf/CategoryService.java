@@ -8,6 +8,7 @@ import java.util.List;
 
 public interface CategoryService {
     List<CategoryDtoResponse> getAllCategory();
+    String getCategoryETag();
     CategoryDtoResponse findById(int id);
     Category findProductByCategory(int id);
     void insert(CategoryDtoRequest categoryRequest);
@@ -0,0 +1,9 @@
+package com.example.backendplantshop.service.intf;
+
+import com.example.backendplantshop.dto.request.momo.MoMoCallbackRequest;
+
+public interface MoMoCallbackService {
+    // Áp dụng IPN (đã verify chữ ký) đúng 1 lần; trả về false nếu là IPN trùng đã xử lý trước đó
+    boolean process(MoMoCallbackRequest callbackRequest);
+    boolean isRecentlyProcessed(MoMoCallbackRequest callbackRequest); // chỉ tra bộ nhớ, không đụng DB
+}
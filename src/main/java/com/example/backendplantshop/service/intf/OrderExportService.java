@@ -0,0 +1,14 @@
+package com.example.backendplantshop.service.intf;
+
+import com.example.backendplantshop.dto.request.OrderPageDtoRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+public interface OrderExportService {
+    /**
+     * Ghi đơn hàng (lọc theo status, shipping_status, user_id, khoảng ngày) trực tiếp ra response
+     * dạng csv hoặc ndjson, bộ nhớ dùng không phụ thuộc số lượng đơn
+     */
+    void exportOrders(OrderPageDtoRequest filter, String format, HttpServletResponse response) throws IOException;
+}
@@ -1,10 +1,12 @@
 package com.example.backendplantshop.service.intf;
 
 import com.example.backendplantshop.dto.request.OrderDtoRequest;
+import com.example.backendplantshop.dto.request.OrderPageDtoRequest;
 import com.example.backendplantshop.dto.request.UpdateOrderStatusDtoRequest;
 import com.example.backendplantshop.dto.request.UpdateShippingStatusDtoRequest;
 import com.example.backendplantshop.dto.request.momo.MoMoCallbackRequest;
 import com.example.backendplantshop.dto.response.OrderDtoResponse;
+import com.example.backendplantshop.dto.response.OrderPageDtoResponse;
 
 import java.util.List;
 
@@ -13,6 +15,7 @@ public interface OrderService {
     OrderDtoResponse getOrderById(int orderId);
     List<OrderDtoResponse> getOrdersByUserId(int userId);
     List<OrderDtoResponse> getAllOrders();
+    OrderPageDtoResponse getOrdersPage(OrderPageDtoRequest request);
     OrderDtoResponse updateOrderStatus(int orderId, UpdateOrderStatusDtoRequest request);
     OrderDtoResponse updateShippingStatus(int orderId, UpdateShippingStatusDtoRequest request);
 //    OrderDtoResponse updateShippingInfo(int orderId, UpdateShippingInfoDtoRequest request);
@@ -1,7 +1,10 @@
 package com.example.backendplantshop.service.intf;
 
 import com.example.backendplantshop.dto.request.products.ProductDtoRequest;
+import com.example.backendplantshop.dto.request.products.ProductFilterDtoRequest;
 import com.example.backendplantshop.dto.response.ProductDtoResponse;
+import com.example.backendplantshop.dto.response.ProductFilterDtoResponse;
+import com.example.backendplantshop.dto.response.ProductSearchDtoResponse;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
@@ -10,6 +13,10 @@ import java.util.List;
 public interface ProductService {
     ProductDtoResponse findProductById(int id);
     List<ProductDtoResponse> getAllProducts();
+    String getCatalogETag();
+    String getProductETag(int id);
+    ProductSearchDtoResponse searchProducts(String keyword, Integer page, Integer size);
+    ProductFilterDtoResponse filterProducts(ProductFilterDtoRequest request);
     void insert(ProductDtoRequest productRequest, MultipartFile image) throws IOException;
     void update(int id, ProductDtoRequest productRequest, MultipartFile image) throws IOException;
     void delete(int id);
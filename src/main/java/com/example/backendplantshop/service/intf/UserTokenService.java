@@ -8,6 +8,7 @@ public interface UserTokenService {
     void saveToken(UserTokens token);
     UserTokens revokeTokensByUser(int userId);
 //    UserTokens findById(int tokenId);
-    UserTokens findTokenByUser(Integer userId);
+    UserTokens findByRefreshToken(String refreshToken);
+    void revokeToken(int tokenId);
 
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package com.example.backendplantshop.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class TransactionUtil {
+
+    private TransactionUtil() {
+    }
+
+    // Nếu đang trong transaction thì chỉ chạy sau khi commit (vd: xóa cache, cập nhật index),
+    // tránh request khác đọc lại dữ liệu cũ từ DB trước khi commit; ngoài transaction thì chạy ngay
+    public static void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // Chỉ chạy khi transaction hiện tại rollback (vd: trả lại trạng thái trong bộ nhớ đã đổi trước đó);
+    // ngoài transaction thì không làm gì
+    public static void runAfterRollback(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        action.run();
+                    }
+                }
+            });
+        }
+    }
+}
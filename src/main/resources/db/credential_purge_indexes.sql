@@ -0,0 +1,11 @@
+-- Index cho job dọn token/otp (CredentialPurgeJob)
+-- DELETE ... LIMIT đi theo index nên mỗi lô chỉ khóa đúng các dòng bị xóa, không quét cả bảng
+
+CREATE INDEX idx_user_tokens_expired_at
+    ON user_tokens (expired_at);
+
+CREATE INDEX idx_user_tokens_revoked
+    ON user_tokens (revoked);
+
+CREATE INDEX idx_user_otp_expires_at
+    ON user_otp (expires_at);
@@ -0,0 +1,21 @@
+-- Hàng đợi bền cho IPN MoMo (MoMoCallbackProcessor): controller chỉ verify chữ ký, lưu vào đây rồi trả 200 ngay,
+-- worker lấy ra áp dụng (MoMoCallbackService), lỗi thì thử lại với backoff, quá số lần thì FAILED.
+-- status: PENDING -> PROCESSING (có hạn next_attempt_at, tiến trình chết thì dòng tự được nhận lại) -> DONE / FAILED
+
+CREATE TABLE IF NOT EXISTS momo_callback_inbox (
+    inbox_id        BIGINT       NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    partner_code    VARCHAR(50)  NOT NULL,
+    momo_order_id   VARCHAR(100) NOT NULL,
+    trans_id        BIGINT       NOT NULL,
+    payload         TEXT         NOT NULL, -- MoMoCallbackRequest dạng JSON
+    status          VARCHAR(20)  NOT NULL DEFAULT 'PENDING',
+    attempts        INT          NOT NULL DEFAULT 0,
+    next_attempt_at DATETIME(3)  NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    last_error      VARCHAR(500) NULL,
+    received_at     DATETIME(3)  NOT NULL,
+    processed_at    DATETIME(3)  NULL,
+    -- MoMo gửi lại IPN chưa xử lý xong thì không thêm dòng mới
+    UNIQUE KEY uk_momo_callback_inbox_partner_order_trans (partner_code, momo_order_id, trans_id),
+    -- worker tìm dòng đến hạn xử lý
+    INDEX idx_momo_callback_inbox_status_next (status, next_attempt_at)
+);
@@ -0,0 +1,15 @@
+-- Sổ IPN MoMo đã xử lý (MoMoCallbackServiceImpl): MoMo gửi lại IPN nhiều lần cho cùng 1 giao dịch,
+-- insert vào đây cùng transaction với cập nhật đơn hàng/đặt cọc, trùng unique key nghĩa là đã xử lý rồi
+
+CREATE TABLE IF NOT EXISTS momo_callbacks (
+    callback_id   BIGINT       NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    partner_code  VARCHAR(50)  NOT NULL,
+    momo_order_id VARCHAR(100) NOT NULL,
+    trans_id      BIGINT       NOT NULL, -- IPN thất bại có thể không có transId -> lưu 0
+    order_id      INT          NULL,
+    purpose       VARCHAR(20)  NOT NULL,
+    result_code   INT          NULL,
+    amount        BIGINT       NULL,
+    processed_at  DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE KEY uk_momo_callbacks_partner_order_trans (partner_code, momo_order_id, trans_id)
+);
@@ -0,0 +1,23 @@
+-- Các lần tạo thanh toán MoMo thành công (MoMoServiceImpl.createPayment): orderId gửi cho MoMo (ORDER_{id}_{timestamp})
+-- không lưu ở đâu khác, mà API tra trạng thái của MoMo cần đúng giá trị này.
+-- MoMoReconciliationJob dùng bảng này để tra lại giao dịch khi mất IPN.
+
+CREATE TABLE IF NOT EXISTS momo_payment_attempts (
+    momo_order_id    VARCHAR(100) NOT NULL PRIMARY KEY,
+    request_id       VARCHAR(64)  NOT NULL,
+    order_id         INT          NOT NULL,
+    purpose          VARCHAR(20)  NOT NULL, -- ORDER_PAYMENT / DEPOSIT
+    amount           BIGINT       NOT NULL,
+    created_at       DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    last_checked_at  DATETIME     NULL,
+    last_result_code INT          NULL,
+    reconciled       TINYINT(1)   NOT NULL DEFAULT 0, -- 1 = MoMo đã trả kết quả cuối (thành công/thất bại), không tra nữa
+    -- job tìm request chưa có kết quả cuối trong khoảng thời gian cần tra
+    INDEX idx_momo_payment_attempts_reconcile (reconciled, created_at),
+    -- chỉ tra request mới nhất của mỗi đơn (NOT EXISTS request mới hơn)
+    INDEX idx_momo_payment_attempts_order (order_id, purpose, created_at)
+);
+
+-- tìm payment PROCESSING / deposit chưa trả theo đơn hàng
+CREATE INDEX idx_payment_order_status ON payment (order_id, status);
+CREATE INDEX idx_deposit_order_paid ON deposit (order_id, paid);
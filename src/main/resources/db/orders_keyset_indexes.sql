@@ -0,0 +1,14 @@
+-- Index cho phân trang keyset đơn hàng (OrderMapper.findPage)
+-- Mỗi index kết thúc bằng (order_date, order_id) để MySQL đọc theo thứ tự sắp xếp và dừng sau LIMIT
+
+CREATE INDEX idx_orders_active_date
+    ON orders (is_deleted, order_date, order_id);
+
+CREATE INDEX idx_orders_status_date
+    ON orders (is_deleted, status, order_date, order_id);
+
+CREATE INDEX idx_orders_shipping_date
+    ON orders (is_deleted, shipping_status, order_date, order_id);
+
+CREATE INDEX idx_orders_user_date
+    ON orders (user_id, is_deleted, order_date, order_id);
@@ -0,0 +1,8 @@
+-- Index cho lọc sản phẩm storefront (ProductMapper.findFiltered)
+-- Kết thúc bằng product_id để MySQL đọc sẵn theo thứ tự ORDER BY product_id DESC và dừng sau LIMIT
+
+CREATE INDEX idx_products_active_id
+    ON products (is_deleted, product_id);
+
+CREATE INDEX idx_products_category_id
+    ON products (is_deleted, category_id, product_id);
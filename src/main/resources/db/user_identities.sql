@@ -0,0 +1,20 @@
+-- Tài khoản đăng nhập qua bên thứ ba (Google...) liên kết với users (AuthServiceImpl.loginWithGoogle)
+-- User tạo từ Google không có mật khẩu nên users.password được phép NULL
+
+CREATE TABLE IF NOT EXISTS user_identities (
+    identity_id INT          NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    user_id     INT          NOT NULL,
+    provider    VARCHAR(20)  NOT NULL,
+    subject     VARCHAR(255) NOT NULL,
+    email       VARCHAR(255) NULL,
+    created_at  DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE KEY uk_user_identities_provider_subject (provider, subject),
+    INDEX idx_user_identities_user (user_id),
+    CONSTRAINT fk_user_identities_user FOREIGN KEY (user_id) REFERENCES users (user_id)
+);
+
+ALTER TABLE users
+    MODIFY COLUMN password VARCHAR(255) NULL;
+
+-- sinh username duy nhất bằng 1 câu LIKE 'base%' (UserMapper.findUsernamesByPrefix)
+CREATE INDEX idx_users_username ON users (username);
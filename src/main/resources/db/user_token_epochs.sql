@@ -0,0 +1,9 @@
+-- Mốc thu hồi access token theo user (TokenRevocationRegistry)
+-- revoked_before là epoch giây: access token có iat < revoked_before bị từ chối ở JwtAuthenticationFilter
+
+CREATE TABLE IF NOT EXISTS user_token_epochs (
+    user_id        INT    NOT NULL PRIMARY KEY,
+    revoked_before BIGINT NOT NULL,
+    INDEX idx_user_token_epochs_revoked_before (revoked_before),
+    CONSTRAINT fk_user_token_epochs_user FOREIGN KEY (user_id) REFERENCES users (user_id)
+);
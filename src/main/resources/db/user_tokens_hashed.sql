@@ -0,0 +1,15 @@
+-- Refresh token lưu dạng SHA-256 (UserTokenServiceImpl), mỗi lần đăng nhập là 1 phiên (1 dòng) riêng
+-- refresh tra thẳng theo token_hash qua unique index thay vì lấy dòng mới nhất của user
+
+-- dọn các dòng không còn dùng được trước khi đổi cấu trúc
+DELETE FROM user_tokens WHERE revoked = 1 OR expired_at < NOW();
+
+ALTER TABLE user_tokens
+    ADD COLUMN token_hash CHAR(64) NULL AFTER user_id,
+    MODIFY COLUMN token TEXT NULL;
+
+UPDATE user_tokens SET token_hash = SHA2(token, 256) WHERE token IS NOT NULL;
+-- không giữ token gốc trong DB nữa
+UPDATE user_tokens SET token = NULL;
+
+CREATE UNIQUE INDEX uk_user_tokens_token_hash ON user_tokens (token_hash);
@@ -0,0 +1,160 @@
+package com.example.backendplantshop.client;
+
+import com.example.backendplantshop.config.HttpClientConfig;
+import com.example.backendplantshop.enums.ErrorCode;
+import com.example.backendplantshop.exception.AppException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Stub cổng MoMo bằng HttpServer của JDK trên cổng ngẫu nhiên, dùng đúng RestTemplate có pool như production
+class MoMoGatewayClientTests {
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile int status = 200;
+    private volatile long delayMs = 0;
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private MoMoGatewayClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.createContext("/v2/gateway/api/create", exchange -> {
+            calls.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            sleep(delayMs);
+            respond(exchange, status, status == 200
+                    ? "{\"resultCode\":0,\"payUrl\":\"https://test-payment.momo.vn/pay\"}"
+                    : "{\"resultCode\":99}");
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/v2/gateway/api/create";
+
+        // threshold 3, mở 300ms, chờ phản hồi tối đa 500ms
+        client = new MoMoGatewayClient(
+                HttpClientConfig.pooledRestTemplate("momo", meterRegistry, 5, 1000, 500),
+                meterRegistry, 3, 300);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void serverErrorsOpenCircuitAndFailFast() {
+        status = 500;
+        for (int i = 0; i < 3; i++) {
+            AppException e = assertThrows(AppException.class, this::create);
+            assertEquals(ErrorCode.PAYMENT_GATEWAY_UNAVAILABLE, e.getErrorCode());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, client.getCircuitState("create"));
+
+        // cầu dao mở: không gọi tới MoMo nữa
+        assertThrows(AppException.class, this::create);
+        assertThrows(AppException.class, this::create);
+        assertEquals(3, calls.get());
+        assertEquals(2.0, meterRegistry.get("momo.gateway.rejected").counter().count());
+        assertEquals(3, meterRegistry.get("momo.gateway.requests").tag("outcome", "server_error").timer().count());
+    }
+
+    @Test
+    void halfOpenSuccessClosesCircuit() {
+        status = 500;
+        for (int i = 0; i < 3; i++) {
+            assertThrows(AppException.class, this::create);
+        }
+        status = 200;
+        sleep(350);
+
+        assertEquals(0, create().get("resultCode"));
+        assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitState("create"));
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    void halfOpenFailureReopensCircuit() {
+        status = 500;
+        for (int i = 0; i < 3; i++) {
+            assertThrows(AppException.class, this::create);
+        }
+        sleep(350);
+
+        assertThrows(AppException.class, this::create); // request thử cũng lỗi
+        assertEquals(CircuitBreaker.State.OPEN, client.getCircuitState("create"));
+        assertThrows(AppException.class, this::create);
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    void timeoutsCountAsFailures() {
+        delayMs = 800;
+        for (int i = 0; i < 3; i++) {
+            AppException e = assertThrows(AppException.class, this::create);
+            assertEquals(ErrorCode.PAYMENT_GATEWAY_UNAVAILABLE, e.getErrorCode());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, client.getCircuitState("create"));
+        assertEquals(3, meterRegistry.get("momo.gateway.requests").tag("outcome", "io_error").timer().count());
+    }
+
+    @Test
+    void clientErrorsDoNotOpenCircuit() {
+        status = 400;
+        for (int i = 0; i < 5; i++) {
+            assertThrows(HttpClientErrorException.class, this::create);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitState("create"));
+        assertEquals(5, calls.get());
+    }
+
+    @Test
+    void queryFailuresDoNotOpenCreateCircuit() {
+        status = 500;
+        for (int i = 0; i < 3; i++) {
+            assertThrows(AppException.class, () -> client.post("query", baseUrl, Map.of("orderId", "ORDER_1"), Map.class));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, client.getCircuitState("query"));
+
+        status = 200;
+        assertEquals(0, create().get("resultCode"));
+        assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitState("create"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> create() {
+        return client.post("create", baseUrl, Map.of("orderId", "ORDER_1"), Map.class);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
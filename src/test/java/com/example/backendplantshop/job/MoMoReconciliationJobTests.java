@@ -0,0 +1,297 @@
+package com.example.backendplantshop.job;
+
+import com.example.backendplantshop.client.MoMoGatewayClient;
+import com.example.backendplantshop.config.HttpClientConfig;
+import com.example.backendplantshop.config.MoMoConfig;
+import com.example.backendplantshop.dto.request.momo.MoMoCallbackRequest;
+import com.example.backendplantshop.entity.MoMoPaymentAttempt;
+import com.example.backendplantshop.mapper.MoMoPaymentAttemptMapper;
+import com.example.backendplantshop.payment.MoMoSigner;
+import com.example.backendplantshop.service.intf.MoMoCallbackService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Stub API tra trạng thái của MoMo bằng HttpServer của JDK; resultCode trả về theo orderId đã cấu hình trước.
+// Mapper và MoMoCallbackService là bản giả trong bộ nhớ, không cần MySQL
+class MoMoReconciliationJobTests {
+    private static final String ACCESS_KEY = "F8BBA842ECF85";
+    private static final String SECRET_KEY = "K951B6PE1waDMi640xX08PD3vg6EkVlz";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Map<String, Integer> resultCodes = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final List<String> badSignatures = new CopyOnWriteArrayList<>();
+    private final FakeAttemptMapper attemptMapper = new FakeAttemptMapper();
+    private final RecordingCallbackService callbackService = new RecordingCallbackService();
+    private HttpServer server;
+    private MoMoReconciliationJob job;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        MoMoSigner signer = new MoMoSigner(ACCESS_KEY, SECRET_KEY);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.createContext("/v2/gateway/api/query", exchange -> {
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            try {
+                JsonNode body = objectMapper.readTree(exchange.getRequestBody());
+                String orderId = body.get("orderId").asText();
+                String expected = signer.sign(signer.createQueryRawHash(orderId, body.get("partnerCode").asText(),
+                        body.get("requestId").asText()));
+                if (!expected.equals(body.get("signature").asText())) {
+                    badSignatures.add(orderId);
+                }
+                sleep(100);
+                int resultCode = resultCodes.getOrDefault(orderId, 42);
+                respond(exchange, "{\"partnerCode\":\"MOMO\",\"orderId\":\"" + orderId + "\",\"requestId\":\""
+                        + body.get("requestId").asText() + "\",\"amount\":150000,\"transId\":"
+                        + (resultCode == 0 ? "4088878653" : "0") + ",\"resultCode\":" + resultCode
+                        + ",\"message\":\"stub\",\"payType\":\"qr\",\"responseTime\":1760000001234,\"extraData\":\"\"}");
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+        server.start();
+
+        MoMoConfig momoConfig = new MoMoConfig();
+        momoConfig.setPartnerCode("MOMO");
+        momoConfig.setLang("vi");
+        momoConfig.setQueryEndpoint("http://127.0.0.1:" + server.getAddress().getPort() + "/v2/gateway/api/query");
+        MoMoGatewayClient gatewayClient = new MoMoGatewayClient(
+                HttpClientConfig.pooledRestTemplate("momo", meterRegistry, 10, 1000, 2000), meterRegistry, 50, 30_000);
+        job = new MoMoReconciliationJob(attemptMapper, gatewayClient, signer, momoConfig, callbackService,
+                meterRegistry, true, 50, 2, 15, 48, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        job.stop();
+        server.stop(0);
+    }
+
+    @Test
+    void appliesFinalResultsThroughCallbackPath() {
+        attemptMapper.orderPayments.add(attempt("ORDER_1_1", 1, "ORDER_PAYMENT"));
+        attemptMapper.orderPayments.add(attempt("ORDER_2_1", 2, "ORDER_PAYMENT"));
+        attemptMapper.deposits.add(attempt("DEPOSIT_3_1", 3, "DEPOSIT"));
+        resultCodes.put("ORDER_1_1", 0);     // đã trả tiền nhưng mất IPN
+        resultCodes.put("ORDER_2_1", 1000);  // người dùng chưa xác nhận
+        resultCodes.put("DEPOSIT_3_1", 0);
+
+        job.reconcileOnce();
+
+        assertTrue(badSignatures.isEmpty());
+        assertEquals(2, callbackService.applied.size());
+        MoMoCallbackRequest order = callbackService.find("ORDER_1_1");
+        assertEquals(0, order.getResultCode());
+        assertEquals(4088878653L, order.getTransId());
+        assertEquals("purpose=ORDER_PAYMENT", order.getExtraData());
+        assertEquals("purpose=DEPOSIT", callbackService.find("DEPOSIT_3_1").getExtraData());
+
+        assertTrue(attemptMapper.reconciled.get("ORDER_1_1"));
+        assertFalse(attemptMapper.reconciled.get("ORDER_2_1"));  // tra lại lần sau
+        assertTrue(attemptMapper.reconciled.get("DEPOSIT_3_1"));
+        assertEquals(2.0, meterRegistry.counter("momo.reconcile", "outcome", "success").count());
+        assertEquals(1.0, meterRegistry.counter("momo.reconcile", "outcome", "pending").count());
+    }
+
+    @Test
+    void failedPaymentIsAppliedAsFailure() {
+        attemptMapper.orderPayments.add(attempt("ORDER_4_1", 4, "ORDER_PAYMENT"));
+        resultCodes.put("ORDER_4_1", 1006); // người dùng từ chối thanh toán
+
+        job.reconcileOnce();
+
+        assertEquals(1006, callbackService.find("ORDER_4_1").getResultCode());
+        assertTrue(attemptMapper.reconciled.get("ORDER_4_1"));
+        assertEquals(1.0, meterRegistry.counter("momo.reconcile", "outcome", "failed").count());
+    }
+
+    // IPN đã ghi momo_callbacks nhưng đơn vẫn PROCESSING (áp dụng lỗi trước đây): không được đóng giao dịch
+    @Test
+    void duplicateWithoutStateChangeStaysOpen() {
+        attemptMapper.orderPayments.add(attempt("ORDER_6_1", 6, "ORDER_PAYMENT"));
+        resultCodes.put("ORDER_6_1", 0);
+        callbackService.duplicates.add("ORDER_6_1");
+        attemptMapper.unsettled.add("ORDER_6_1");
+
+        job.reconcileOnce();
+
+        assertFalse(attemptMapper.reconciled.get("ORDER_6_1"));
+        assertEquals(1.0, meterRegistry.counter("momo.reconcile", "outcome", "unsettled").count());
+        assertEquals(0.0, meterRegistry.counter("momo.reconcile", "outcome", "success").count());
+    }
+
+    @Test
+    void queriesRunWithCappedParallelism() {
+        for (int i = 0; i < 8; i++) {
+            attemptMapper.orderPayments.add(attempt("ORDER_" + i + "_2", i, "ORDER_PAYMENT"));
+            resultCodes.put("ORDER_" + i + "_2", 7000);
+        }
+
+        long started = System.nanoTime();
+        job.reconcileOnce();
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+        assertEquals(8, attemptMapper.reconciled.size());
+        assertEquals(2, maxInFlight.get());
+        assertTrue(elapsedMs >= 400, "8 lời gọi 100ms với tối đa 2 song song phải mất ít nhất 400ms");
+        assertTrue(callbackService.applied.isEmpty());
+    }
+
+    @Test
+    void scheduledRunIsHandedOffAndOverlappingRunsAreSkipped() {
+        for (int i = 0; i < 4; i++) {
+            attemptMapper.orderPayments.add(attempt("ORDER_" + i + "_3", i, "ORDER_PAYMENT"));
+            resultCodes.put("ORDER_" + i + "_3", 7000);
+        }
+
+        // thread @Scheduled không phải chờ 4 lời gọi 100ms
+        long started = System.nanoTime();
+        job.reconcile();
+        assertTrue(System.nanoTime() - started < 50_000_000L);
+        job.reconcile();
+        assertEquals(1.0, meterRegistry.counter("momo.reconcile.skipped").count());
+
+        waitUntil(() -> meterRegistry.timer("momo.reconcile.run").count() == 1);
+        job.reconcile();
+        waitUntil(() -> meterRegistry.timer("momo.reconcile.run").count() == 2);
+        assertEquals(1.0, meterRegistry.counter("momo.reconcile.skipped").count());
+    }
+
+    @Test
+    void gatewayErrorsLeaveAttemptForNextRun() {
+        attemptMapper.orderPayments.add(attempt("ORDER_5_1", 5, "ORDER_PAYMENT"));
+        server.removeContext("/v2/gateway/api/query");
+        server.createContext("/v2/gateway/api/query", exchange -> {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+
+        job.reconcileOnce();
+
+        assertNull(attemptMapper.reconciled.get("ORDER_5_1"));
+        assertTrue(callbackService.applied.isEmpty());
+        assertEquals(1.0, meterRegistry.counter("momo.reconcile", "outcome", "error").count());
+    }
+
+    private static MoMoPaymentAttempt attempt(String momoOrderId, int orderId, String purpose) {
+        return MoMoPaymentAttempt.builder()
+                .momo_order_id(momoOrderId)
+                .request_id("req-" + momoOrderId)
+                .order_id(orderId)
+                .purpose(purpose)
+                .amount(150_000L)
+                .reconciled(Boolean.FALSE)
+                .build();
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "hết thời gian chờ");
+            sleep(10);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class RecordingCallbackService implements MoMoCallbackService {
+        private final List<MoMoCallbackRequest> applied = new CopyOnWriteArrayList<>();
+        // orderId đã có trong momo_callbacks -> process bỏ qua như IPN trùng
+        private final Set<String> duplicates = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public boolean process(MoMoCallbackRequest callbackRequest) {
+            if (duplicates.contains(callbackRequest.getOrderId())) {
+                return false;
+            }
+            applied.add(callbackRequest);
+            return true;
+        }
+
+        @Override
+        public boolean isRecentlyProcessed(MoMoCallbackRequest callbackRequest) {
+            return false;
+        }
+
+        private MoMoCallbackRequest find(String momoOrderId) {
+            return applied.stream().filter(callback -> momoOrderId.equals(callback.getOrderId())).findFirst().orElseThrow();
+        }
+    }
+
+    private static class FakeAttemptMapper implements MoMoPaymentAttemptMapper {
+        private final List<MoMoPaymentAttempt> orderPayments = new ArrayList<>();
+        private final List<MoMoPaymentAttempt> deposits = new ArrayList<>();
+        private final Map<String, Boolean> reconciled = new ConcurrentHashMap<>();
+        // đơn/đặt cọc vẫn còn chờ sau khi áp dụng kết quả
+        private final Set<String> unsettled = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void insert(MoMoPaymentAttempt attempt) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<MoMoPaymentAttempt> findStaleOrderPayments(int minAgeMinutes, int maxAgeHours, int recheckMinutes, int limit) {
+            return orderPayments;
+        }
+
+        @Override
+        public List<MoMoPaymentAttempt> findStaleDeposits(int minAgeMinutes, int maxAgeHours, int recheckMinutes, int limit) {
+            return deposits;
+        }
+
+        @Override
+        public boolean isSettled(String momoOrderId) {
+            return !unsettled.contains(momoOrderId);
+        }
+
+        @Override
+        public int markChecked(String momoOrderId, Integer resultCode, boolean reconciled) {
+            this.reconciled.put(momoOrderId, reconciled);
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.backendplantshop.mail;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.MailSender;
+import org.springframework.mail.SimpleMailMessage;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Không cần SMTP thật: FakeMailSender đóng vai server mail cục bộ, ghi lại mail đã nhận
+// và có thể cho lỗi N lần đầu để kiểm tra thử lại / dead-letter
+class MailQueueTests {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private MailQueue mailQueue;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (mailQueue != null) {
+            mailQueue.stop();
+        }
+    }
+
+    @Test
+    void enqueueReturnsImmediatelyAndRetriesUntilDelivered() {
+        FakeMailSender sender = new FakeMailSender(2);
+        mailQueue = start(sender, 4);
+
+        long started = System.nanoTime();
+        assertTrue(mailQueue.enqueue(message("a@example.com")));
+        assertTrue(System.nanoTime() - started < 50_000_000L);
+
+        waitUntil(() -> sender.delivered.size() == 1);
+        assertEquals(3, sender.calls.get());
+        assertEquals(2.0, meterRegistry.counter("mail.retried").count());
+        assertEquals(0.0, meterRegistry.counter("mail.dead-letter").count());
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        FakeMailSender sender = new FakeMailSender(Integer.MAX_VALUE);
+        mailQueue = start(sender, 3);
+
+        mailQueue.enqueue(message("b@example.com"));
+
+        waitUntil(() -> meterRegistry.counter("mail.dead-letter").count() == 1.0);
+        assertEquals(3, sender.calls.get());
+        assertTrue(sender.delivered.isEmpty());
+    }
+
+    @Test
+    void failuresDuringShutdownAreDeadLetteredNotLost() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        FakeMailSender sender = new FakeMailSender(Integer.MAX_VALUE, release);
+        mailQueue = start(sender, 3);
+
+        mailQueue.enqueue(message("c@example.com"));
+        waitUntil(() -> sender.calls.get() == 1);
+        // mail thứ 2 còn nằm trong hàng đợi khi bắt đầu tắt
+        mailQueue.enqueue(message("d@example.com"));
+
+        Thread stopping = new Thread(() -> {
+            try {
+                mailQueue.stop();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        stopping.start();
+        Thread.sleep(200);
+        release.countDown();
+        stopping.join(15_000);
+        mailQueue = null;
+
+        // lỗi lúc đang tắt không hẹn lại trên retryScheduler đã dừng mà ghi thẳng dead-letter
+        assertEquals(2, sender.calls.get());
+        assertEquals(0.0, meterRegistry.counter("mail.retried").count());
+        assertEquals(2.0, meterRegistry.counter("mail.dead-letter").count());
+    }
+
+    private MailQueue start(MailSender sender, int maxAttempts) {
+        MailQueue queue = new MailQueue(sender, meterRegistry, 100, 1, 20, maxAttempts, 10);
+        queue.start();
+        return queue;
+    }
+
+    private static SimpleMailMessage message(String to) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setTo(to);
+        message.setSubject("OTP");
+        message.setText("123456");
+        return message;
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "hết thời gian chờ");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static class FakeMailSender implements MailSender {
+        private final int failures;
+        private final AtomicInteger calls = new AtomicInteger();
+        private final List<SimpleMailMessage> delivered = new CopyOnWriteArrayList<>();
+
+        private final CountDownLatch release;
+
+        private FakeMailSender(int failures) {
+            this(failures, new CountDownLatch(0));
+        }
+
+        // lần gửi đầu tiên chờ release để giả lập SMTP chậm
+        private FakeMailSender(int failures, CountDownLatch release) {
+            this.failures = failures;
+            this.release = release;
+        }
+
+        @Override
+        public void send(SimpleMailMessage simpleMessage) throws MailException {
+            send(new SimpleMailMessage[]{simpleMessage});
+        }
+
+        @Override
+        public void send(SimpleMailMessage... simpleMessages) throws MailException {
+            int call = calls.incrementAndGet();
+            if (call == 1) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (call <= failures) {
+                throw new MailSendException("SMTP tạm thời không phản hồi");
+            }
+            delivered.addAll(List.of(simpleMessages));
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.backendplantshop.mapper;
+
+import com.example.backendplantshop.dto.request.OrderDetailDtoRequest;
+import com.example.backendplantshop.dto.request.OrderDtoRequest;
+import com.example.backendplantshop.entity.Category;
+import com.example.backendplantshop.entity.Products;
+import com.example.backendplantshop.enums.ErrorCode;
+import com.example.backendplantshop.exception.AppException;
+import com.example.backendplantshop.service.intf.OrderService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+// Chạy trên DB thật (giống BackendPlantshopApplicationTests) để kiểm tra khóa dòng của MySQL.
+// Dữ liệu test (sản phẩm, đơn hàng) bị xóa hẳn ở tearDown; giỏ hàng được mock để không đụng giỏ của user thật
+@SpringBootTest
+class ProductMapperReserveStockTests {
+    private static final int BUYERS = 200;
+    private static final int STOCK = 50;
+
+    @Autowired
+    private ProductMapper productMapper;
+
+    @Autowired
+    private CategoryMapper categoryMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private CartDetailMapper cartDetailMapper;
+
+    private final List<Integer> createdProductIds = new ArrayList<>();
+    private final List<Integer> createdOrderIds = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        List<Category> categories = categoryMapper.getAll();
+        Assumptions.assumeTrue(categories != null && !categories.isEmpty(), "cần ít nhất 1 danh mục để tạo sản phẩm test");
+        int categoryId = categories.get(0).getCategory_id();
+        createdProductIds.add(createProduct("reserve-test-a-" + System.nanoTime(), categoryId));
+        createdProductIds.add(createProduct("reserve-test-b-" + System.nanoTime(), categoryId));
+    }
+
+    @AfterEach
+    void tearDown() {
+        // productMapper.delete chỉ xóa mềm, nên xóa hẳn để không để lại dữ liệu trong DB
+        for (Integer orderId : createdOrderIds) {
+            jdbcTemplate.update("DELETE FROM order_details WHERE order_id = ?", orderId);
+            jdbcTemplate.update("DELETE FROM orders WHERE order_id = ?", orderId);
+        }
+        for (Integer productId : createdProductIds) {
+            jdbcTemplate.update("DELETE FROM products WHERE product_id = ?", productId);
+        }
+    }
+
+    @Test
+    void concurrentBuyersNeverOversell() throws Exception {
+        int productId = createdProductIds.get(0);
+        AtomicInteger succeeded = runBuyers(buyer -> {
+            Map<Integer, Integer> quantities = new LinkedHashMap<>();
+            quantities.put(productId, 1);
+            return quantities;
+        });
+
+        assertEquals(STOCK, succeeded.get());
+        assertEquals(0, productMapper.findById(productId).getQuantity());
+    }
+
+    @Test
+    void crossProductOrdersDoNotDeadlockOrOversell() throws Exception {
+        int productA = createdProductIds.get(0);
+        int productB = createdProductIds.get(1);
+        // một nửa người mua thêm A trước, nửa còn lại thêm B trước; LinkedHashMap giữ nguyên thứ tự đó,
+        // chỉ có ORDER BY product_id trong reserveStock khóa dòng theo thứ tự cố định
+        AtomicInteger succeeded = runBuyers(buyer -> {
+            Map<Integer, Integer> quantities = new LinkedHashMap<>();
+            if (buyer % 2 == 0) {
+                quantities.put(productA, 1);
+                quantities.put(productB, 1);
+            } else {
+                quantities.put(productB, 1);
+                quantities.put(productA, 1);
+            }
+            return quantities;
+        });
+
+        // deadlock sẽ làm future.get ném lỗi; đơn thiếu hàng rollback nên không có đơn nào trừ 1 nửa
+        assertEquals(STOCK, succeeded.get());
+        assertEquals(0, productMapper.findById(productA).getQuantity());
+        assertEquals(0, productMapper.findById(productB).getQuantity());
+    }
+
+    @Test
+    void createOrderRollsBackWholeOrderWhenStockRunsOut() throws Exception {
+        int productA = createdProductIds.get(0);
+        int productB = createdProductIds.get(1);
+        jdbcTemplate.update("UPDATE products SET quantity = 1 WHERE product_id = ?", productB);
+        Integer userId = jdbcTemplate.queryForObject(
+                "SELECT MIN(user_id) FROM users WHERE is_deleted = 0 AND role = 'USER'", Integer.class);
+        Assumptions.assumeTrue(userId != null, "cần ít nhất 1 user để tạo đơn test");
+
+        int buyers = 20;
+        ExecutorService pool = Executors.newFixedThreadPool(buyers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int buyer = 0; buyer < buyers; buyer++) {
+            futures.add(pool.submit(() -> {
+                SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                        String.valueOf(userId), null, List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+                try {
+                    start.await();
+                    createdOrderIds.add(orderService.createOrder(orderFor(productA, productB)).getOrder_id());
+                } finally {
+                    SecurityContextHolder.clearContext();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        int rejected = 0;
+        for (Future<?> future : futures) {
+            try {
+                future.get(30, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                // thiếu hàng ở bước kiểm tra sớm hoặc ở câu UPDATE có điều kiện đều phải ra QUANTITY_IS_NOT_ENOUGH
+                AppException appException = assertInstanceOf(AppException.class, e.getCause());
+                assertEquals(ErrorCode.QUANTITY_IS_NOT_ENOUGH, appException.getErrorCode());
+                rejected++;
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(1, createdOrderIds.size());
+        assertEquals(buyers - 1, rejected);
+        assertEquals(0, productMapper.findById(productB).getQuantity());
+        // đơn bị từ chối không được trừ A (đã trừ thì phải rollback cùng đơn)
+        assertEquals(STOCK - 1, productMapper.findById(productA).getQuantity());
+    }
+
+    private static OrderDtoRequest orderFor(int productA, int productB) {
+        return OrderDtoRequest.builder()
+                .total(BigDecimal.valueOf(2))
+                .discount_amount(BigDecimal.ZERO)
+                .final_total(BigDecimal.valueOf(2))
+                .shipping_name("reserve stock test")
+                .shipping_address("reserve stock test")
+                .shipping_phone("0900000000")
+                .items(List.of(item(productA), item(productB)))
+                .build();
+    }
+
+    private static OrderDetailDtoRequest item(int productId) {
+        return OrderDetailDtoRequest.builder()
+                .product_id(productId)
+                .quantity(1)
+                .price_at_order(BigDecimal.ONE)
+                .sub_total(BigDecimal.ONE)
+                .build();
+    }
+
+    private AtomicInteger runBuyers(IntFunction<Map<Integer, Integer>> order) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int buyer = 0; buyer < BUYERS; buyer++) {
+            Map<Integer, Integer> quantities = order.apply(buyer);
+            futures.add(pool.submit(() -> {
+                start.await();
+                // giống OrderServiceImpl.createOrder: giữ hàng thiếu thì rollback cả đơn
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (productMapper.reserveStock(quantities) == quantities.size()) {
+                        succeeded.incrementAndGet();
+                    } else {
+                        status.setRollbackOnly();
+                    }
+                });
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        return succeeded;
+    }
+
+    private int createProduct(String name, int categoryId) {
+        productMapper.insert(Products.builder()
+                .product_name(name)
+                .description("reserve stock test")
+                .img_url("")
+                .price(BigDecimal.ONE)
+                .quantity(STOCK)
+                .size("S")
+                .category_id(categoryId)
+                .build());
+        return productMapper.findByProductName_Size_Category(name, "S", categoryId).getProduct_id();
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.backendplantshop.payment;
+
+import com.example.backendplantshop.dto.request.momo.MoMoCallbackRequest;
+import com.example.backendplantshop.entity.MoMoCallbackInbox;
+import com.example.backendplantshop.mapper.MoMoCallbackInboxMapper;
+import com.example.backendplantshop.service.intf.MoMoCallbackService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Không cần MySQL: FakeInboxMapper giữ bảng momo_callback_inbox trong bộ nhớ (bỏ qua next_attempt_at),
+// FakeCallbackService đóng vai MoMoCallbackService và có thể lỗi N lần đầu
+class MoMoCallbackProcessorTests {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FakeInboxMapper inboxMapper = new FakeInboxMapper();
+    private MoMoCallbackProcessor processor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (processor != null) {
+            processor.stop();
+        }
+    }
+
+    @Test
+    void enqueueStoresCallbackAndWorkerAppliesIt() {
+        FakeCallbackService callbackService = new FakeCallbackService(0);
+        processor = start(callbackService, 3);
+
+        assertTrue(processor.enqueue(callback(1001L)));
+        assertFalse(processor.enqueue(callback(1001L))); // MoMo gửi lại trước khi worker xử lý xong
+
+        waitUntil(() -> meterRegistry.get("momo.inbox.lag").timer().count() == 1);
+        assertEquals("DONE", inboxMapper.rows.get(1L).getStatus());
+        assertEquals(1, callbackService.applied.size());
+        assertEquals(1001L, callbackService.applied.get(0).getTransId());
+        assertEquals(1.0, meterRegistry.counter("momo.inbox.duplicates").count());
+    }
+
+    @Test
+    void failedCallbackIsRetriedByPoll() {
+        FakeCallbackService callbackService = new FakeCallbackService(2);
+        processor = start(callbackService, 3);
+
+        processor.enqueue(callback(1002L));
+        // poll() giống @Scheduled: nhặt lại dòng PENDING sau mỗi lần lỗi
+        waitUntil(() -> {
+            processor.poll();
+            return "DONE".equals(inboxMapper.rows.get(1L).getStatus());
+        });
+        assertEquals(3, callbackService.calls.get());
+        assertEquals(2.0, meterRegistry.counter("momo.inbox.failures", "outcome", "retry").count());
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        FakeCallbackService callbackService = new FakeCallbackService(Integer.MAX_VALUE);
+        processor = start(callbackService, 2);
+
+        processor.enqueue(callback(1003L));
+        waitUntil(() -> {
+            processor.poll();
+            return meterRegistry.counter("momo.inbox.failures", "outcome", "dead").count() == 1.0;
+        });
+        assertEquals("FAILED", inboxMapper.rows.get(1L).getStatus());
+        assertEquals(2, callbackService.calls.get());
+        processor.poll();
+        assertEquals(0.0, meterRegistry.get("momo.inbox.depth").gauge().value());
+    }
+
+    private MoMoCallbackProcessor start(MoMoCallbackService callbackService, int maxAttempts) {
+        MoMoCallbackProcessor started = new MoMoCallbackProcessor(inboxMapper, callbackService, new ObjectMapper(),
+                meterRegistry, 2, 10, 10, maxAttempts, 10, 60_000, 7);
+        started.start();
+        return started;
+    }
+
+    private static MoMoCallbackRequest callback(long transId) {
+        return MoMoCallbackRequest.builder()
+                .partnerCode("MOMO")
+                .orderId("ORDER_12_1700000000000")
+                .requestId("req-" + transId)
+                .amount(150_000L)
+                .transId(transId)
+                .resultCode(0)
+                .message("Successful.")
+                .build();
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Hết thời gian chờ");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static class FakeCallbackService implements MoMoCallbackService {
+        private final int failures;
+        private final AtomicInteger calls = new AtomicInteger();
+        private final List<MoMoCallbackRequest> applied = new CopyOnWriteArrayList<>();
+
+        private FakeCallbackService(int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        public boolean process(MoMoCallbackRequest callbackRequest) {
+            if (calls.incrementAndGet() <= failures) {
+                throw new IllegalStateException("Deadlock found when trying to get lock");
+            }
+            applied.add(callbackRequest);
+            return true;
+        }
+
+        @Override
+        public boolean isRecentlyProcessed(MoMoCallbackRequest callbackRequest) {
+            return false;
+        }
+    }
+
+    private static class FakeInboxMapper implements MoMoCallbackInboxMapper {
+        private final Map<Long, MoMoCallbackInbox> rows = new ConcurrentHashMap<>();
+        private final AtomicLong sequence = new AtomicLong();
+
+        @Override
+        public synchronized int insertIfAbsent(MoMoCallbackInbox inbox) {
+            boolean exists = rows.values().stream().anyMatch(row -> row.getPartner_code().equals(inbox.getPartner_code())
+                    && row.getMomo_order_id().equals(inbox.getMomo_order_id())
+                    && row.getTrans_id() == inbox.getTrans_id());
+            if (exists) {
+                return 0;
+            }
+            inbox.setInbox_id(sequence.incrementAndGet());
+            inbox.setStatus("PENDING");
+            rows.put(inbox.getInbox_id(), copy(inbox));
+            return 1;
+        }
+
+        @Override
+        public MoMoCallbackInbox findById(long inboxId) {
+            return copy(rows.get(inboxId));
+        }
+
+        @Override
+        public List<Long> findDueIds(int limit) {
+            List<Long> ids = new ArrayList<>();
+            rows.values().stream()
+                    .filter(row -> "PENDING".equals(row.getStatus()))
+                    .limit(limit)
+                    .forEach(row -> ids.add(row.getInbox_id()));
+            return ids;
+        }
+
+        @Override
+        public synchronized int claim(long inboxId, long leaseMs) {
+            MoMoCallbackInbox row = rows.get(inboxId);
+            if (!"PENDING".equals(row.getStatus())) {
+                return 0;
+            }
+            row.setStatus("PROCESSING");
+            row.setAttempts(row.getAttempts() + 1);
+            return 1;
+        }
+
+        @Override
+        public int markDone(long inboxId) {
+            rows.get(inboxId).setStatus("DONE");
+            return 1;
+        }
+
+        @Override
+        public int markRetry(long inboxId, long delayMs, String lastError) {
+            MoMoCallbackInbox row = rows.get(inboxId);
+            row.setLast_error(lastError);
+            row.setStatus("PENDING");
+            return 1;
+        }
+
+        @Override
+        public int markFailed(long inboxId, String lastError) {
+            MoMoCallbackInbox row = rows.get(inboxId);
+            row.setLast_error(lastError);
+            row.setStatus("FAILED");
+            return 1;
+        }
+
+        @Override
+        public long countPending() {
+            return rows.values().stream()
+                    .filter(row -> "PENDING".equals(row.getStatus()) || "PROCESSING".equals(row.getStatus()))
+                    .count();
+        }
+
+        @Override
+        public LocalDateTime findOldestPendingReceivedAt() {
+            return rows.values().stream()
+                    .filter(row -> "PENDING".equals(row.getStatus()) || "PROCESSING".equals(row.getStatus()))
+                    .map(MoMoCallbackInbox::getReceived_at)
+                    .min(LocalDateTime::compareTo)
+                    .orElse(null);
+        }
+
+        @Override
+        public int deleteDone(int retentionDays, int limit) {
+            return 0;
+        }
+
+        private static MoMoCallbackInbox copy(MoMoCallbackInbox row) {
+            return MoMoCallbackInbox.builder()
+                    .inbox_id(row.getInbox_id())
+                    .partner_code(row.getPartner_code())
+                    .momo_order_id(row.getMomo_order_id())
+                    .trans_id(row.getTrans_id())
+                    .payload(row.getPayload())
+                    .status(row.getStatus())
+                    .attempts(row.getAttempts())
+                    .last_error(row.getLast_error())
+                    .received_at(row.getReceived_at())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.backendplantshop.payment;
+
+import com.example.backendplantshop.dto.request.momo.MoMoCallbackRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MoMoSignerTests {
+
+    // RFC 4231 test case 2
+    @Test
+    void signMatchesHmacSha256TestVector() {
+        MoMoSigner signer = new MoMoSigner("access", "Jefe");
+        assertEquals("5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843",
+                signer.sign("what do ya want for nothing?"));
+    }
+
+    @Test
+    void rawHashesKeepMoMoFieldOrder() {
+        MoMoSigner signer = new MoMoSigner("F8BBA842ECF85", "secret");
+        assertEquals("accessKey=F8BBA842ECF85&amount=150000&extraData=purpose=DEPOSIT&ipnUrl=https://shop/ipn"
+                        + "&orderId=DEPOSIT_7_1&orderInfo=Đặt cọc&partnerCode=MOMO&redirectUrl=https://shop/return"
+                        + "&requestId=req-1&requestType=captureWallet",
+                signer.createRawHash(150_000L, "purpose=DEPOSIT", "https://shop/ipn", "DEPOSIT_7_1", "Đặt cọc",
+                        "MOMO", "https://shop/return", "req-1", "captureWallet"));
+
+        MoMoCallbackRequest callback = MoMoCallbackRequest.builder()
+                .partnerCode("MOMO")
+                .orderId("ORDER_7_1")
+                .requestId("req-1")
+                .amount(150_000L)
+                .transId(4088878653L)
+                .resultCode(0)
+                .message("Successful.")
+                .responseTime(1760000001234L)
+                .build();
+        assertEquals("accessKey=F8BBA842ECF85&amount=150000&extraData=&message=Successful.&orderId=ORDER_7_1"
+                        + "&orderInfo=&orderType=&partnerCode=MOMO&payType=&requestId=req-1&responseTime=1760000001234"
+                        + "&resultCode=0&transId=4088878653",
+                signer.createCallbackRawHash(callback));
+    }
+
+    @Test
+    void verifyRejectsTamperedSignature() {
+        MoMoSigner signer = new MoMoSigner("access", "secret");
+        String signature = signer.sign("amount=1000");
+        assertTrue(signer.verify(signature, "amount=1000"));
+        assertFalse(signer.verify(signature, "amount=1001"));
+        assertFalse(signer.verify(null, "amount=1000"));
+    }
+
+    // mỗi thread dùng Mac riêng nên ký song song vẫn cho cùng kết quả
+    @Test
+    void signIsThreadSafe() throws Exception {
+        MoMoSigner signer = new MoMoSigner("access", "secret");
+        String expected = signer.sign("orderId=ORDER_1");
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(pool.submit(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    if (!expected.equals(signer.sign("orderId=ORDER_1"))) {
+                        return false;
+                    }
+                }
+                return true;
+            }));
+        }
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get());
+        }
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.backendplantshop.service.impl;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Stub Google token/userinfo bằng HttpServer của JDK trên cổng ngẫu nhiên, không gọi Google thật
+class GoogleAuthServiceTests {
+    private HttpServer server;
+    private final AtomicInteger tokenCalls = new AtomicInteger();
+    private final AtomicInteger userInfoCalls = new AtomicInteger();
+    private GoogleAuthService googleAuthService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.createContext("/token", exchange -> {
+            tokenCalls.incrementAndGet();
+            String form = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            sleep(200); // đủ lâu để các request trùng code chồng lên nhau
+            if (form.contains("code=used")) {
+                respond(exchange, 400, "{\"error\":\"invalid_grant\",\"error_description\":\"Bad Request\"}");
+            } else {
+                respond(exchange, 200, "{\"access_token\":\"google-access-token\"}");
+            }
+        });
+        server.createContext("/userinfo", exchange -> {
+            userInfoCalls.incrementAndGet();
+            respond(exchange, 200, "{\"id\":\"1234567890\",\"email\":\"plant@example.com\",\"name\":\"Plant Lover\"}");
+        });
+        server.start();
+
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        googleAuthService = new GoogleAuthService(new RestTemplate(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(googleAuthService, "clientId", "client-id");
+        ReflectionTestUtils.setField(googleAuthService, "clientSecret", "client-secret");
+        ReflectionTestUtils.setField(googleAuthService, "redirectUri", "http://localhost:3000/auth/google/callback");
+        ReflectionTestUtils.setField(googleAuthService, "tokenUri", baseUrl + "/token");
+        ReflectionTestUtils.setField(googleAuthService, "userInfoUri", baseUrl + "/userinfo");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void duplicateCodesShareOneExchange() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(4);
+        List<Future<Map<String, String>>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(clients.submit(() -> googleAuthService.getUserInfoByCode("auth-code", null)));
+        }
+        for (Future<Map<String, String>> result : results) {
+            assertEquals("plant@example.com", result.get().get("email"));
+            assertEquals("1234567890", result.get().get("id"));
+        }
+        clients.shutdown();
+
+        // gửi lại sau khi đã xong cũng dùng kết quả cũ
+        assertEquals("plant@example.com", googleAuthService.getUserInfoByCode("auth-code", null).get("email"));
+        assertEquals(1, tokenCalls.get());
+        assertEquals(1, userInfoCalls.get());
+    }
+
+    @Test
+    void failedExchangeIsNotCached() {
+        assertThrows(Exception.class, () -> googleAuthService.getUserInfoByCode("used", null));
+        assertThrows(Exception.class, () -> googleAuthService.getUserInfoByCode("used", null));
+        assertEquals(2, tokenCalls.get());
+        assertEquals(0, userInfoCalls.get());
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.backendplantshop.service.impl;
+
+import com.example.backendplantshop.dto.request.momo.MoMoCallbackRequest;
+import com.example.backendplantshop.entity.MoMoCallback;
+import com.example.backendplantshop.mapper.MoMoCallbackMapper;
+import com.example.backendplantshop.service.intf.OrderService;
+import com.example.backendplantshop.service.intf.PaymentService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Không cần MySQL: FakeCallbackMapper giữ bảng momo_callbacks trong bộ nhớ và chỉ giữ dòng đã insert khi
+// transaction commit, FakeTransactionManager đóng vai @Transactional trên process()
+class MoMoCallbackServiceImplTests {
+    private final FakeCallbackMapper callbackMapper = new FakeCallbackMapper();
+    private final PaymentService paymentService = mock(PaymentService.class);
+    private final OrderService orderService = mock(OrderService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TransactionTemplate transactionTemplate = new TransactionTemplate(new FakeTransactionManager(callbackMapper));
+    private MoMoCallbackServiceImpl callbackService;
+
+    @BeforeEach
+    void setUp() {
+        when(paymentService.extractOrderIdFromMoMoOrderId("ORDER_12_1700000000000")).thenReturn(12);
+        callbackService = newInstance();
+    }
+
+    @Test
+    void duplicateIpnIsAppliedOnce() {
+        assertTrue(process(callbackService, callback(2001L)));
+        assertFalse(process(callbackService, callback(2001L)));
+        // instance khác chưa thấy key trong bộ nhớ vẫn bị bảng momo_callbacks chặn
+        assertFalse(process(newInstance(), callback(2001L)));
+
+        verify(orderService, times(1)).handleOrderPaymentCallback(eq(12), any());
+        assertEquals(1.0, meterRegistry.counter("momo.callback", "result", "duplicate", "deduped_by", "memory").count());
+        assertEquals(1.0, meterRegistry.counter("momo.callback", "result", "duplicate", "deduped_by", "db").count());
+    }
+
+    @Test
+    void failedApplyLeavesKeyFreeForRetry() {
+        doThrow(new IllegalStateException("Lock wait timeout exceeded")).doNothing()
+                .when(orderService).handleOrderPaymentCallback(eq(12), any());
+
+        assertThrows(IllegalStateException.class, () -> process(callbackService, callback(2002L)));
+        // dòng momo_callbacks rollback cùng transaction, key không bị nhớ là đã xử lý
+        assertTrue(callbackMapper.keys.isEmpty());
+        assertFalse(callbackService.isRecentlyProcessed(callback(2002L)));
+
+        // MoMo gửi lại / inbox thử lại thì được áp dụng
+        assertTrue(process(callbackService, callback(2002L)));
+        verify(orderService, times(2)).handleOrderPaymentCallback(eq(12), any());
+        assertEquals(1, callbackMapper.keys.size());
+        assertEquals(1.0, meterRegistry.counter("momo.callback", "result", "processed", "deduped_by", "none").count());
+    }
+
+    private MoMoCallbackServiceImpl newInstance() {
+        return new MoMoCallbackServiceImpl(callbackMapper, paymentService, orderService, meterRegistry, 100);
+    }
+
+    private boolean process(MoMoCallbackServiceImpl service, MoMoCallbackRequest callbackRequest) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> service.process(callbackRequest)));
+    }
+
+    private static MoMoCallbackRequest callback(long transId) {
+        return MoMoCallbackRequest.builder()
+                .partnerCode("MOMO")
+                .orderId("ORDER_12_1700000000000")
+                .requestId("req-" + transId)
+                .amount(150_000L)
+                .transId(transId)
+                .resultCode(0)
+                .message("Successful.")
+                .build();
+    }
+
+    private static class FakeCallbackMapper implements MoMoCallbackMapper {
+        private final Set<String> keys = new HashSet<>();
+        private final List<String> pending = new ArrayList<>();
+
+        @Override
+        public int insertIfAbsent(MoMoCallback callback) {
+            String key = callback.getPartner_code() + '|' + callback.getMomo_order_id() + '|' + callback.getTrans_id();
+            if (keys.contains(key) || pending.contains(key)) {
+                return 0;
+            }
+            pending.add(key);
+            return 1;
+        }
+
+        private void commit() {
+            keys.addAll(pending);
+            pending.clear();
+        }
+
+        private void rollback() {
+            pending.clear();
+        }
+    }
+
+    private static class FakeTransactionManager extends AbstractPlatformTransactionManager {
+        private final FakeCallbackMapper callbackMapper;
+
+        private FakeTransactionManager(FakeCallbackMapper callbackMapper) {
+            this.callbackMapper = callbackMapper;
+        }
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            callbackMapper.commit();
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+            callbackMapper.rollback();
+        }
+    }
+}